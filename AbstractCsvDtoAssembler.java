@@ -12,6 +12,7 @@ public abstract class AbstractCsvDtoAssembler<T> {
     private final Map<String, Field> fieldCache = new HashMap<>();
     private final Class<T> dtoClass;
     private final Map<String, Object> programValues;
+    private final String[] hashColumns;
 
     protected AbstractCsvDtoAssembler(
             Properties props,
@@ -29,6 +30,23 @@ public abstract class AbstractCsvDtoAssembler<T> {
             field.setAccessible(true);
             fieldCache.put(field.getName(), field);
         }
+
+        // 行ハッシュはマッピング対象の列だけを、毎回同じ順で混ぜる
+        this.hashColumns = mapping.keySet().stream().sorted().toArray(String[]::new);
+    }
+
+    /**
+     * マッピング対象の列（CSV側の生の値）から64bitの行ハッシュを作る。差分同期の変更検知用。
+     * programValues（batchId など実行ごとに変わる値）は含めない。
+     */
+    public long rowHash(CsvRecord record) {
+        long h = KeyHash.SEED_A;
+        for (String column : hashColumns) {
+            String value = record.get(column);
+            // null と "" を区別する
+            h = KeyHash.combine(h, value == null ? 0L : KeyHash.hash64(value));
+        }
+        return h;
     }
 
     public T assemble(CsvRecord record) {
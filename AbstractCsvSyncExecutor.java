@@ -1,8 +1,13 @@
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 public abstract class AbstractCsvSyncExecutor<T> {
 
@@ -10,15 +15,39 @@ public abstract class AbstractCsvSyncExecutor<T> {
 
     private final BulkInsertRepository<T> repository;
     private final AbstractCsvDtoAssembler<T> assembler;
+    private final RejectSink<? super T> rejectSink;
+    private final long maxRejects;
+
+    private long rejected;
 
     protected AbstractCsvSyncExecutor(
             BulkInsertRepository<T> repository,
             AbstractCsvDtoAssembler<T> assembler) {
+        this(repository, assembler, null, 0);
+    }
+
+    /**
+     * insert が失敗したチャンクを半分ずつに割って再実行し、1件まで割っても失敗したDTOを rejectSink に逃がす版。
+     * 接続断・デッドロックなど行のせいではない失敗（BatchBisector.isConnectionOrTransientError）は切り分けずにそのまま投げる。
+     * ★ repository.insert は1回の呼び出しが全件成功か全件失敗（1トランザクション）であること
+     *   （JdbcBulkInsertRepository など）。非同期に insert するリポジトリでは切り分けられない。
+     *
+     * @param rejectSink リジェクトしたDTOの出力先（null なら従来どおり失敗で中断）
+     * @param maxRejects これを超えてリジェクトしたら中断
+     */
+    protected AbstractCsvSyncExecutor(
+            BulkInsertRepository<T> repository,
+            AbstractCsvDtoAssembler<T> assembler,
+            RejectSink<? super T> rejectSink,
+            long maxRejects) {
         this.repository = repository;
         this.assembler = assembler;
+        this.rejectSink = rejectSink;
+        this.maxRejects = maxRejects;
     }
 
     public void execute(InputStream csvStream) throws Exception {
+        rejected = 0;
         try (CsvResultReader reader =
                      new CsvResultReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8))) {
 
@@ -32,14 +61,168 @@ public abstract class AbstractCsvSyncExecutor<T> {
                 buffer.add(dto);
 
                 if (buffer.size() >= CHUNK_SIZE) {
-                    repository.insert(buffer);
+                    insertChunk(buffer, null);
                     buffer = new ArrayList<>(CHUNK_SIZE);
                 }
             }
 
             if (!buffer.isEmpty()) {
-                repository.insert(buffer);
+                insertChunk(buffer, null);
             }
         }
     }
+
+    /**
+     * 差分同期版。前回のスナップショット（キー → 行ハッシュ）と比べて、
+     * 新規・変更のあった行だけを DTO にして repository に渡す。
+     * - 変更なしの行は DTO 変換もしない
+     * - 正常終了したらスナップショットを今回の内容で書き換える（失敗時は前回のまま）
+     * - リジェクトした行はスナップショットに入れない（次回また新規として扱い、再投入する）
+     * - 削除（前回あって今回ない行）は扱わない
+     * - 変更行も insert に渡るので、repository 側は upsert 相当であること
+     *
+     * @param keyColumn    CSV側のキー列名（例: "Id"）
+     * @param snapshotFile スナップショットファイル（初回は存在しなくてよい＝全件が新規）
+     */
+    public DeltaSummary executeDelta(InputStream csvStream, String keyColumn, Path snapshotFile) throws Exception {
+        Objects.requireNonNull(keyColumn, "keyColumn");
+        Objects.requireNonNull(snapshotFile, "snapshotFile");
+
+        long rowsRead = 0;
+        long rowsNew = 0;
+        long rowsChanged = 0;
+        long rowsUnchanged = 0;
+        rejected = 0;
+
+        RowHashSnapshot.Builder next = new RowHashSnapshot.Builder();
+
+        try (RowHashSnapshot prev = RowHashSnapshot.open(snapshotFile);
+             CsvResultReader reader =
+                     new CsvResultReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8))) {
+
+            reader.open();
+
+            List<T> buffer = new ArrayList<>(CHUNK_SIZE);
+            // buffer[i] のキー・行ハッシュ。insert できた行だけ next に入れる
+            long[] keyHashes = new long[CHUNK_SIZE];
+            long[] rowHashes = new long[CHUNK_SIZE];
+            CsvRecord record;
+
+            while ((record = reader.readRecord()) != null) {
+                rowsRead++;
+
+                String key = record.get(keyColumn);
+                if (key == null) {
+                    throw new IllegalStateException("キー列がありません: " + keyColumn);
+                }
+
+                long keyHash = KeyHash.hash64(key);
+                long rowHash = assembler.rowHash(record);
+
+                long idx = prev.indexOf(keyHash);
+                if (idx >= 0 && prev.rowHashAt(idx) == rowHash) {
+                    next.add(keyHash, rowHash);
+                    rowsUnchanged++;
+                    continue;
+                }
+                if (idx < 0) {
+                    rowsNew++;
+                } else {
+                    rowsChanged++;
+                }
+
+                T dto = assembler.assemble(record);
+                keyHashes[buffer.size()] = keyHash;
+                rowHashes[buffer.size()] = rowHash;
+                buffer.add(dto);
+
+                if (buffer.size() >= CHUNK_SIZE) {
+                    insertDeltaChunk(buffer, keyHashes, rowHashes, next);
+                    buffer = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+
+            if (!buffer.isEmpty()) {
+                insertDeltaChunk(buffer, keyHashes, rowHashes, next);
+            }
+        }
+
+        // prev を close してから置き換える（Windowsでは mmap 中のファイルを置き換えられない）
+        next.writeTo(snapshotFile);
+
+        return new DeltaSummary(rowsRead, rowsNew, rowsChanged, rowsUnchanged);
+    }
+
+    /** 直近の execute / executeDelta でリジェクトしたDTOの件数（rejectSink 指定時のみ） */
+    public long rejectedCount() {
+        return rejected;
+    }
+
+    /** チャンクを insert し、リジェクトされなかった行のハッシュだけを next に入れる */
+    private void insertDeltaChunk(List<T> chunk, long[] keyHashes, long[] rowHashes, RowHashSnapshot.Builder next)
+            throws Exception {
+        Set<T> rejectedRows = Collections.newSetFromMap(new IdentityHashMap<>());
+        insertChunk(chunk, rejectedRows);
+        for (int i = 0; i < chunk.size(); i++) {
+            if (!rejectedRows.contains(chunk.get(i))) {
+                next.add(keyHashes[i], rowHashes[i]);
+            }
+        }
+    }
+
+    /** @param rejectedOut リジェクトしたDTOを入れる先（不要なら null） */
+    private void insertChunk(List<T> chunk, Set<T> rejectedOut) throws Exception {
+        if (rejectSink == null) {
+            repository.insert(chunk);
+            return;
+        }
+        insertBisecting(chunk, rejectedOut);
+    }
+
+    /** 失敗したら半分ずつ再実行。悪いDTOが k 件なら追加の insert は O(k log n) 回 */
+    private void insertBisecting(List<T> rows, Set<T> rejectedOut) throws Exception {
+        try {
+            repository.insert(rows);
+        } catch (RuntimeException e) {
+            // 接続断・一時障害は行の問題ではないので切り分けない
+            if (BatchBisector.isConnectionOrTransientError(e)) {
+                throw e;
+            }
+            if (rows.size() == 1) {
+                rejected++;
+                if (rejected > maxRejects) {
+                    throw new IllegalStateException("リジェクト件数が上限(" + maxRejects + ")を超えました", e);
+                }
+                rejectSink.reject(rows.get(0), e);
+                if (rejectedOut != null) rejectedOut.add(rows.get(0));
+                return;
+            }
+            // リポジトリがリストを保持しても壊れないよう、subList ではなくコピーを渡す
+            int mid = rows.size() >>> 1;
+            insertBisecting(new ArrayList<>(rows.subList(0, mid)), rejectedOut);
+            insertBisecting(new ArrayList<>(rows.subList(mid, rows.size())), rejectedOut);
+        }
+    }
+
+    public static final class DeltaSummary {
+        public final long rowsRead;
+        public final long rowsNew;
+        public final long rowsChanged;
+        public final long rowsUnchanged;
+
+        public DeltaSummary(long rowsRead, long rowsNew, long rowsChanged, long rowsUnchanged) {
+            this.rowsRead = rowsRead;
+            this.rowsNew = rowsNew;
+            this.rowsChanged = rowsChanged;
+            this.rowsUnchanged = rowsUnchanged;
+        }
+
+        @Override
+        public String toString() {
+            return "DeltaSummary{rowsRead=" + rowsRead +
+                    ", rowsNew=" + rowsNew +
+                    ", rowsChanged=" + rowsChanged +
+                    ", rowsUnchanged=" + rowsUnchanged + "}";
+        }
+    }
 }
\ No newline at end of file
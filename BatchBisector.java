@@ -0,0 +1,158 @@
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.sql.Savepoint;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * executeBatch が1行の制約違反などで失敗したとき、バッチを半分ずつに割って再実行し、
+ * 悪い行だけを RejectSink に逃がす（残りはそのまま反映する）。
+ *
+ * - 正常時はふつうの executeBatch 1回（オーバーヘッドは Savepoint 1つだけ）
+ * - 失敗時は Savepoint まで戻して左右半分を再実行。悪い行が k 行なら往復は O(k log n)
+ * - 1行まで割っても失敗した行が reject される
+ * - 行のせいではない失敗（接続断・デッドロック・ロック待ちタイムアウト等。isConnectionOrTransientError）は
+ *   切り分けずにそのまま投げる（リジェクトにすると一時障害で正しい行まで捨ててしまう）
+ * - reject が maxRejects を超えたら「行ではなく全体がおかしい」とみなして例外
+ *
+ * ★ autoCommit=false のコネクションで使うこと（Savepoint を使うため）。commit はしない。
+ * スレッドセーフではない（1コネクション1インスタンス）。
+ */
+public final class BatchBisector<R> {
+
+    /** 1行分のパラメータを PreparedStatement に設定する */
+    public interface RowBinder<R> {
+        void bind(PreparedStatement ps, R row) throws SQLException;
+    }
+
+    private final RowBinder<? super R> binder;
+    private final RejectSink<? super R> rejectSink;
+    private final long maxRejects;
+
+    private long rejected;
+    private long retryRoundTrips;
+
+    /**
+     * @param binder     行 → パラメータ
+     * @param rejectSink リジェクト行の出力先
+     * @param maxRejects これを超えてリジェクトしたら例外（無制限なら Long.MAX_VALUE）
+     */
+    public BatchBisector(RowBinder<? super R> binder, RejectSink<? super R> rejectSink, long maxRejects) {
+        this.binder = Objects.requireNonNull(binder, "binder");
+        this.rejectSink = Objects.requireNonNull(rejectSink, "rejectSink");
+        if (maxRejects < 0) throw new IllegalArgumentException("maxRejects must be >= 0");
+        this.maxRejects = maxRejects;
+    }
+
+    /**
+     * rows を1バッチとして実行する。失敗したら切り分けて、悪い行以外を反映する。
+     *
+     * @return 反映件数（executeBatch の正の戻り値の合計）
+     */
+    public int execute(Connection conn, PreparedStatement ps, List<R> rows) throws Exception {
+        if (rows.isEmpty()) return 0;
+        return execute(conn, ps, rows, 0, rows.size());
+    }
+
+    private int execute(Connection conn, PreparedStatement ps, List<R> rows, int from, int to) throws Exception {
+        Savepoint sp = conn.setSavepoint();
+        try {
+            for (int i = from; i < to; i++) {
+                binder.bind(ps, rows.get(i));
+                ps.addBatch();
+            }
+            int applied = BulkSuccessCsvToDbUpdater.sum(ps.executeBatch());
+            releaseQuietly(conn, sp);
+            return applied;
+
+        } catch (SQLException e) {
+            if (isConnectionOrTransientError(e)) {
+                // 切れたコネクションでは rollback も失敗するので、その例外は元の例外に付けるだけにする
+                try {
+                    ps.clearBatch();
+                    conn.rollback(sp);
+                } catch (SQLException re) {
+                    e.addSuppressed(re);
+                }
+                throw e;
+            }
+
+            try { ps.clearBatch(); } catch (SQLException ignore) {}
+            conn.rollback(sp);
+            releaseQuietly(conn, sp);
+
+            if (to - from == 1) {
+                reject(rows.get(from), e);
+                return 0;
+            }
+
+            int mid = (from + to) >>> 1;
+            retryRoundTrips += 2;
+            return execute(conn, ps, rows, from, mid) + execute(conn, ps, rows, mid, to);
+        }
+    }
+
+    private void reject(R row, SQLException e) throws Exception {
+        // BatchUpdateException は原因が getNextException 側にあることが多い
+        SQLException cause = e;
+        if (e instanceof BatchUpdateException && e.getNextException() != null) {
+            cause = e.getNextException();
+        }
+
+        rejected++;
+        if (rejected > maxRejects) {
+            throw new IllegalStateException("リジェクト件数が上限(" + maxRejects + ")を超えました", cause);
+        }
+        rejectSink.reject(row, cause);
+    }
+
+    /** これまでにリジェクトした行数 */
+    public long rejectedCount() {
+        return rejected;
+    }
+
+    /** 切り分けのために追加で実行したバッチ数 */
+    public long retryRoundTrips() {
+        return retryRoundTrips;
+    }
+
+    /**
+     * 行のせいではない失敗か（切り分けずに投げるべきか）。原因（getCause / getNextException）をたどって見る。
+     * - 接続断：SQLState 08xxx、SQLTransientConnectionException
+     * - 一時障害：SQLTransientException（SQLTimeoutException・SQLTransactionRollbackException を含む）、
+     *   SQLState 40001（シリアライズ失敗・デッドロック）/ 40P01（PostgreSQL のデッドロック）、
+     *   Oracle の ORA-00060（デッドロック）/ ORA-00054・ORA-30006（ロック待ち）、MySQL の 1205（ロック待ちタイムアウト）
+     * AbstractCsvSyncExecutor の切り分けでも同じ判定を使う。
+     */
+    static boolean isConnectionOrTransientError(Throwable e) {
+        int depth = 0;
+        for (Throwable t = e; t != null && depth < 32; depth++) {
+            if (t instanceof SQLTransientException) return true;
+            if (t instanceof SQLException) {
+                SQLException se = (SQLException) t;
+                String state = se.getSQLState();
+                if (state != null && (state.startsWith("08") || state.equals("40001") || state.equals("40P01"))) {
+                    return true;
+                }
+                int code = se.getErrorCode();
+                if (code == 60 || code == 54 || code == 30006 || code == 1205) {
+                    if (state == null || !state.startsWith("23")) return true; // 23xxx（制約違反）は行の問題
+                }
+                if (se.getNextException() != null && se.getNextException() != se.getCause()) {
+                    if (isConnectionOrTransientError(se.getNextException())) return true;
+                }
+            }
+            Throwable next = t.getCause();
+            t = next == t ? null : next;
+        }
+        return false;
+    }
+
+    private static void releaseQuietly(Connection conn, Savepoint sp) {
+        // releaseSavepoint 未対応のドライバ（Oracle など）もあるので失敗は無視する
+        try { conn.releaseSavepoint(sp); } catch (SQLException ignore) {}
+    }
+}
@@ -0,0 +1,263 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 1件ずつの merge の代わりに、チャンク単位で MERGE（UPSERT）する。
+ * - Mode.MULTI_ROW  : チャンクを1本のMERGE文にまとめる（バインド変数の上限内で分割）
+ * - Mode.JDBC_BATCH : 1行MERGEを addBatch / executeBatch
+ * - 同一チャンク内で同じキーが複数回出たら後勝ち
+ *   （Oracle ORA-30926 / PostgreSQL "cannot affect row a second time" の回避）
+ * - commit はしない（トランザクションは呼び出し側）
+ *
+ * 方言ごとのSQL：
+ * - ORACLE     : MERGE INTO t USING (SELECT ? AS c.. FROM DUAL UNION ALL ...) src ON (...)
+ * - H2         : MERGE INTO t (c..) KEY (k..) VALUES (...),(...)
+ * - POSTGRESQL : INSERT INTO t (c..) VALUES (...),(...) ON CONFLICT (k..) DO UPDATE SET ...
+ *                （キー列にユニーク制約が必要）
+ */
+public final class BatchedMergeUpserter<T> {
+
+    public enum Dialect {
+        ORACLE,
+        H2,
+        POSTGRESQL
+    }
+
+    public enum Mode {
+        MULTI_ROW,
+        JDBC_BATCH
+    }
+
+    private static final int MAX_CACHED_SQL = 8;
+
+    private final String tableName;
+    private final DtoColumnBinding<T> binding;
+    private final List<String> keyColumns;
+    private final int[] keyIndexes;
+    private final Dialect dialect;
+    private final Mode mode;
+    private final int rowsPerStatement;
+
+    private final Map<Integer, String> sqlCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param tableName     MERGE先テーブル
+     * @param binding       カラム ⇔ DTOフィールド（キー列も含める）
+     * @param keyColumns    突合キーのカラム名（binding のカラム名と一致させる）
+     * @param dialect       SQL方言
+     * @param mode          MULTI_ROW / JDBC_BATCH
+     * @param maxBindParams 1ステートメントあたりのバインド変数の上限（MULTI_ROW で使用）
+     */
+    public BatchedMergeUpserter(
+            String tableName,
+            DtoColumnBinding<T> binding,
+            List<String> keyColumns,
+            Dialect dialect,
+            Mode mode,
+            int maxBindParams) {
+        if (maxBindParams <= 0) throw new IllegalArgumentException("maxBindParams must be > 0");
+
+        this.tableName = Objects.requireNonNull(tableName, "tableName");
+        this.binding = Objects.requireNonNull(binding, "binding");
+        this.keyColumns = new ArrayList<>(Objects.requireNonNull(keyColumns, "keyColumns"));
+        this.dialect = Objects.requireNonNull(dialect, "dialect");
+        this.mode = Objects.requireNonNull(mode, "mode");
+
+        if (this.keyColumns.isEmpty()) throw new IllegalArgumentException("keyColumns is empty");
+
+        this.keyIndexes = new int[this.keyColumns.size()];
+        for (int i = 0; i < this.keyColumns.size(); i++) {
+            int idx = binding.columns().indexOf(this.keyColumns.get(i));
+            if (idx < 0) {
+                throw new IllegalArgumentException("キー列が binding にありません: " + this.keyColumns.get(i));
+            }
+            keyIndexes[i] = idx;
+        }
+
+        this.rowsPerStatement = mode == Mode.JDBC_BATCH ? 1 : Math.max(1, maxBindParams / binding.columnCount());
+    }
+
+    public BatchedMergeUpserter(
+            String tableName,
+            DtoColumnBinding<T> binding,
+            List<String> keyColumns,
+            Dialect dialect) {
+        this(tableName, binding, keyColumns, dialect, Mode.MULTI_ROW, JdbcBulkInsertRepository.DEFAULT_MAX_BIND_PARAMS);
+    }
+
+    /**
+     * チャンクをまとめてMERGEする。
+     *
+     * @return ドライバが返した更新件数の合計（SUCCESS_NO_INFO などの負値は加算しない）
+     */
+    public long upsert(Connection conn, List<T> chunk) throws SQLException {
+        Objects.requireNonNull(conn, "conn");
+        if (chunk == null || chunk.isEmpty()) {
+            return 0;
+        }
+
+        List<T> rows = lastWinsByKey(chunk);
+
+        if (mode == Mode.JDBC_BATCH) {
+            long total = 0;
+            try (PreparedStatement ps = conn.prepareStatement(sql(1))) {
+                for (T dto : rows) {
+                    binding.bind(ps, 0, dto);
+                    ps.addBatch();
+                }
+                for (int r : ps.executeBatch()) {
+                    if (r > 0) total += r;
+                }
+            }
+            return total;
+        }
+
+        long total = 0;
+        int size = rows.size();
+        int from = 0;
+
+        int fullStatements = size / rowsPerStatement;
+        if (fullStatements > 0) {
+            try (PreparedStatement ps = conn.prepareStatement(sql(rowsPerStatement))) {
+                for (int s = 0; s < fullStatements; s++) {
+                    bindRows(ps, rows, from, rowsPerStatement);
+                    total += Math.max(0, ps.executeUpdate());
+                    from += rowsPerStatement;
+                }
+            }
+        }
+
+        int rest = size - from;
+        if (rest > 0) {
+            try (PreparedStatement ps = conn.prepareStatement(sql(rest))) {
+                bindRows(ps, rows, from, rest);
+                total += Math.max(0, ps.executeUpdate());
+            }
+        }
+        return total;
+    }
+
+    private List<T> lastWinsByKey(List<T> chunk) {
+        Map<List<Object>, T> byKey = new LinkedHashMap<>(chunk.size() * 2);
+        for (T dto : chunk) {
+            List<Object> key = new ArrayList<>(keyIndexes.length);
+            for (int idx : keyIndexes) {
+                key.add(binding.value(dto, idx));
+            }
+            // remove してから put：後勝ちの行を「最後に出た位置」に置く
+            byKey.remove(key);
+            byKey.put(key, dto);
+        }
+        Collection<T> values = byKey.values();
+        return values.size() == chunk.size() ? chunk : new ArrayList<>(values);
+    }
+
+    private void bindRows(PreparedStatement ps, List<T> rows, int from, int count) throws SQLException {
+        int offset = 0;
+        for (int i = from; i < from + count; i++) {
+            offset = binding.bind(ps, offset, rows.get(i));
+        }
+    }
+
+    private String sql(int rows) {
+        String sql = sqlCache.get(rows);
+        if (sql != null) {
+            return sql;
+        }
+        sql = buildSql(rows);
+        if (sqlCache.size() < MAX_CACHED_SQL) {
+            sqlCache.put(rows, sql);
+        }
+        return sql;
+    }
+
+    private String buildSql(int rows) {
+        List<String> columns = binding.columns();
+        List<String> nonKeyColumns = new ArrayList<>();
+        for (String c : columns) {
+            if (!keyColumns.contains(c)) nonKeyColumns.add(c);
+        }
+        String cols = String.join(", ", columns);
+
+        StringBuilder sb = new StringBuilder(128 + rows * columns.size() * 8);
+
+        switch (dialect) {
+            case ORACLE: {
+                sb.append("MERGE INTO ").append(tableName).append(" tgt USING (");
+                for (int r = 0; r < rows; r++) {
+                    if (r > 0) sb.append(" UNION ALL ");
+                    sb.append("SELECT ");
+                    for (int i = 0; i < columns.size(); i++) {
+                        if (i > 0) sb.append(", ");
+                        sb.append('?');
+                        if (r == 0) sb.append(" AS ").append(columns.get(i));
+                    }
+                    sb.append(" FROM DUAL");
+                }
+                sb.append(") src ON (");
+                for (int i = 0; i < keyColumns.size(); i++) {
+                    if (i > 0) sb.append(" AND ");
+                    sb.append("tgt.").append(keyColumns.get(i)).append(" = src.").append(keyColumns.get(i));
+                }
+                sb.append(')');
+                if (!nonKeyColumns.isEmpty()) {
+                    sb.append(" WHEN MATCHED THEN UPDATE SET ");
+                    for (int i = 0; i < nonKeyColumns.size(); i++) {
+                        if (i > 0) sb.append(", ");
+                        sb.append("tgt.").append(nonKeyColumns.get(i)).append(" = src.").append(nonKeyColumns.get(i));
+                    }
+                }
+                sb.append(" WHEN NOT MATCHED THEN INSERT (").append(cols).append(") VALUES (");
+                for (int i = 0; i < columns.size(); i++) {
+                    if (i > 0) sb.append(", ");
+                    sb.append("src.").append(columns.get(i));
+                }
+                sb.append(')');
+                return sb.toString();
+            }
+            case H2: {
+                sb.append("MERGE INTO ").append(tableName).append(" (").append(cols).append(") KEY (")
+                        .append(String.join(", ", keyColumns)).append(") VALUES ");
+                appendValueRows(sb, rows, columns.size());
+                return sb.toString();
+            }
+            case POSTGRESQL: {
+                sb.append("INSERT INTO ").append(tableName).append(" (").append(cols).append(") VALUES ");
+                appendValueRows(sb, rows, columns.size());
+                sb.append(" ON CONFLICT (").append(String.join(", ", keyColumns)).append(") DO ");
+                if (nonKeyColumns.isEmpty()) {
+                    sb.append("NOTHING");
+                } else {
+                    sb.append("UPDATE SET ");
+                    for (int i = 0; i < nonKeyColumns.size(); i++) {
+                        if (i > 0) sb.append(", ");
+                        sb.append(nonKeyColumns.get(i)).append(" = EXCLUDED.").append(nonKeyColumns.get(i));
+                    }
+                }
+                return sb.toString();
+            }
+            default:
+                throw new IllegalStateException("未対応のDialect: " + dialect);
+        }
+    }
+
+    private static void appendValueRows(StringBuilder sb, int rows, int columnCount) {
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) sb.append(", ");
+            sb.append('(');
+            for (int i = 0; i < columnCount; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append('?');
+            }
+            sb.append(')');
+        }
+    }
+}
@@ -0,0 +1,492 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bulk API 2.0（ingest）の非同期クライアント。
+ * - HttpClient（HTTP/2、コネクションプール）は全インスタンスで1つを共有する
+ * - 送信は sendAsync。HttpClient の実行スレッドは仮想スレッド（Java 21 以降。無ければキャッシュプール）
+ * - 再試行は Thread.sleep せず、共有タイマー（1スレッド）で次の送信を予約する
+ *   → 何百ジョブを同時に待っても、待っている間はスレッドを使わない
+ * - 再試行の条件と待ち時間は BulkV2Uploader と同じ（429/5xx/タイムアウト、Retry-After 優先、指数バックオフ+ジッター）
+ * - 全ての送信（アップロード・状態取得・結果ダウンロード）は org 共有の BulkRateLimiter を通す
+ *
+ * 接続先（インスタンスURL・APIバージョン・トークン）ごとに1インスタンス。インスタンスはスレッドセーフ。
+ *
+ * 使い方：
+ *   BulkApiAsyncClient api = new BulkApiAsyncClient(base, "v60.0", token);
+ *   api.createJob("RetailStore", "upsert", "LinkKey__c")
+ *      .thenCompose(jobId -> api.uploadCsv(jobId, body, 8).thenApply(r -> jobId))
+ *      .thenCompose(api::closeJob)
+ *      .thenCompose(jobId -> api.pollUntilDone(jobId, Duration.ofSeconds(5), Duration.ofHours(2)))
+ *      .join();
+ */
+public final class BulkApiAsyncClient {
+
+    /** ジョブの状態（getJobInfo / pollUntilDone が返すキー） */
+    public static final String[] JOB_INFO_FIELDS = {
+            "id", "state", "object", "operation",
+            "numberRecordsProcessed", "numberRecordsFailed", "errorMessage"
+    };
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 8;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+    // -------------------------
+    // 共有部分（HttpClient / 実行スレッド / 再試行タイマー）
+    // -------------------------
+
+    private static final class Shared {
+        static final ExecutorService EXECUTOR = newExecutor();
+        static final HttpClient CLIENT = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(20))
+                .executor(EXECUTOR)
+                .build();
+        static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bulk-api-retry-timer");
+            t.setDaemon(true);
+            return t;
+        });
+
+        /** Java 21 以降なら仮想スレッド（リフレクションで呼ぶので Java 17 でもコンパイルできる） */
+        private static ExecutorService newExecutor() {
+            try {
+                Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) m.invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                AtomicInteger seq = new AtomicInteger();
+                return Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r, "bulk-api-http-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+        }
+    }
+
+    private final HttpClient client;
+    private final ScheduledExecutorService timer;
+    private final BulkRateLimiter limiter;
+    private final String instanceBaseUrl;
+    private final String apiVersion;
+    private final String accessToken;
+
+    /**
+     * @param instanceBaseUrl 例: https://xxxxx.my.salesforce.com
+     * @param apiVersion      例: v60.0
+     */
+    public BulkApiAsyncClient(String instanceBaseUrl, String apiVersion, String accessToken) {
+        this(Shared.CLIENT, Shared.TIMER, BulkRateLimiter.forOrg(instanceBaseUrl), instanceBaseUrl, apiVersion, accessToken);
+    }
+
+    /** HttpClient / タイマー / 流量制御を差し替える場合（テストなど） */
+    BulkApiAsyncClient(HttpClient client, ScheduledExecutorService timer, BulkRateLimiter limiter,
+                       String instanceBaseUrl, String apiVersion, String accessToken) {
+        this.client = Objects.requireNonNull(client, "client");
+        this.timer = Objects.requireNonNull(timer, "timer");
+        this.limiter = Objects.requireNonNull(limiter, "limiter");
+        this.instanceBaseUrl = Objects.requireNonNull(instanceBaseUrl, "instanceBaseUrl");
+        this.apiVersion = Objects.requireNonNull(apiVersion, "apiVersion");
+        this.accessToken = Objects.requireNonNull(accessToken, "accessToken");
+    }
+
+    // -------------------------
+    // Public API
+    // -------------------------
+
+    /**
+     * ingest ジョブを作る（CSV / 改行LF。RotatingCsvWriter・CsvToolkit の出力と同じ）。
+     *
+     * @param operation       insert / update / upsert / delete など
+     * @param externalIdField upsert の外部ID項目（upsert 以外は null）
+     * @return jobId
+     */
+    public CompletableFuture<String> createJob(String object, String operation, String externalIdField) {
+        StringBuilder json = new StringBuilder(160)
+                .append("{\"object\":").append(jsonString(object))
+                .append(",\"operation\":").append(jsonString(operation));
+        if (externalIdField != null) {
+            json.append(",\"externalIdFieldName\":").append(jsonString(externalIdField));
+        }
+        json.append(",\"contentType\":\"CSV\",\"lineEnding\":\"LF\"}");
+        String body = json.toString();
+
+        return send(() -> jsonRequest(ingestUrl(""))
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString(), DEFAULT_MAX_ATTEMPTS, "create job")
+                .thenApply(resp -> {
+                    String id = SalesforceResponseParser.pick(resp.body(), "id").get("id");
+                    if (id == null) {
+                        throw new CompletionException(new IOException(
+                                "create job: id がありません body=" + BulkV2Uploader.truncate(resp.body(), 2000)));
+                    }
+                    return id;
+                });
+    }
+
+    /** CSVファイルをアップロードする（再試行時はファイルを先頭から送り直す） */
+    public CompletableFuture<HttpResponse<String>> uploadCsv(String jobId, Path csvPath, int maxAttempts) {
+        return upload(jobId, () -> {
+            try {
+                return HttpRequest.BodyPublishers.ofFile(csvPath);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, maxAttempts);
+    }
+
+    /**
+     * ReplayableBodyBuffer（close 済み）からアップロードする。再試行時は先頭から送り直す。
+     * discard は呼び出し側で、返した Future の完了後に行うこと。
+     */
+    public CompletableFuture<HttpResponse<String>> uploadCsv(String jobId, ReplayableBodyBuffer body, int maxAttempts) {
+        return upload(jobId, body::bodyPublisher, maxAttempts);
+    }
+
+    /** アップロード完了（state=UploadComplete）にする。完了すると jobId を返す */
+    public CompletableFuture<String> closeJob(String jobId) {
+        return patchState(jobId, "UploadComplete");
+    }
+
+    /** ジョブを中止（state=Aborted）する。完了すると jobId を返す */
+    public CompletableFuture<String> abortJob(String jobId) {
+        return patchState(jobId, "Aborted");
+    }
+
+    /** ジョブの状態（JOB_INFO_FIELDS のキー。値が無ければ null） */
+    public CompletableFuture<Map<String, String>> getJobInfo(String jobId) {
+        return getJobInfoJson(jobId).thenApply(json -> TopLevelJsonFields.pick(json, JOB_INFO_FIELDS));
+    }
+
+    /** ジョブの状態（レスポンスのJSONそのまま） */
+    public CompletableFuture<String> getJobInfoJson(String jobId) {
+        return send(() -> jsonRequest(ingestUrl(jobId)).GET().build(),
+                HttpResponse.BodyHandlers.ofString(), DEFAULT_MAX_ATTEMPTS, "get job " + jobId)
+                .thenApply(HttpResponse::body);
+    }
+
+    /**
+     * 終了状態（JobComplete / Failed / Aborted）になるまで interval ごとに状態を取る。
+     * 待つ間はタイマーに予約するだけでスレッドを使わない。
+     * 多数のジョブを待つなら、進み具合で間隔を変える BulkJobPoller を使う。
+     * timeout を過ぎたら IOException で失敗する（ジョブ自体は止めない）。
+     */
+    public CompletableFuture<Map<String, String>> pollUntilDone(String jobId, Duration interval, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+        pollOnce(jobId, interval, deadline, result);
+        return result;
+    }
+
+    /**
+     * 結果CSV（successfulResults / failedResults / unprocessedrecords）をファイルに保存する。
+     * 2xx の本体だけを {dest}.part に書き、受信し終わったら dest に置き換える（既存の dest は上書き）。
+     * エラー時の本体はファイルに書かず、例外メッセージに入れる。
+     *
+     * @param kind 例: "successfulResults"
+     */
+    public CompletableFuture<Path> downloadResults(String jobId, String kind, Path dest) {
+        Path part = dest.resolveSibling(dest.getFileName() + ".part");
+        HttpResponse.BodyHandler<Object> handler = info -> info.statusCode() / 100 == 2
+                ? HttpResponse.BodySubscribers.mapping(
+                        HttpResponse.BodySubscribers.ofFile(part,
+                                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                        p -> (Object) p)
+                : HttpResponse.BodySubscribers.mapping(
+                        HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), b -> (Object) b);
+
+        return send(() -> HttpRequest.newBuilder()
+                        .uri(URI.create(ingestUrl(jobId + "/" + kind)))
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("Authorization", "Bearer " + accessToken)
+                        .header("Accept", "text/csv")
+                        .GET()
+                        .build(),
+                handler, DEFAULT_MAX_ATTEMPTS, "download " + kind + " " + jobId)
+                .handle((resp, err) -> {
+                    try {
+                        if (err != null) throw err;
+                        return replace(part, dest);
+                    } catch (Throwable t) {
+                        try { Files.deleteIfExists(part); } catch (IOException ignore) {}
+                        throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(unwrap(t));
+                    }
+                });
+    }
+
+    /** part を dest に置き換える（できれば ATOMIC_MOVE） */
+    private static Path replace(Path part, Path dest) throws IOException {
+        try {
+            return Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            return Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 結果CSV（successfulResults / failedResults）をファイルに保存せず、受信中のストリームとして返す。
+     * ヘッダーが届いた時点で完了するので、本体は読みながら受信する（BulkSuccessCsvToDbUpdater.updateSfIdsFromSuccessStream）。
+     * 読み終わったら close すること。再試行はヘッダーが届くまで（本体の途中で切れたら読む側で開き直す）。
+     */
+    public CompletableFuture<InputStream> openResults(String jobId, String kind) {
+        return send(() -> HttpRequest.newBuilder()
+                        .uri(URI.create(ingestUrl(jobId + "/" + kind)))
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("Authorization", "Bearer " + accessToken)
+                        .header("Accept", "text/csv")
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofInputStream(), DEFAULT_MAX_ATTEMPTS, "open " + kind + " " + jobId)
+                .thenApply(HttpResponse::body);
+    }
+
+    /**
+     * Bulk query（jobs/query）の結果を1ページ取る。次ページの Sforce-Locator はレスポンスヘッダーにある。
+     * handler はヘッダーが届いた時点で呼ばれるので、本体を読み終わる前に次ページを始められる
+     * （BulkQueryResultFetcher）。再試行時は handler がもう一度呼ばれる。
+     *
+     * @param locator    前ページの Sforce-Locator（1ページ目は null）
+     * @param maxRecords 1ページの最大件数（0 以下なら指定しない＝サーバー既定）
+     */
+    public <T> CompletableFuture<HttpResponse<T>> getQueryResults(
+            String jobId, String locator, int maxRecords, HttpResponse.BodyHandler<T> handler) {
+        StringBuilder url = new StringBuilder(queryUrl(jobId + "/results"));
+        char sep = '?';
+        if (maxRecords > 0) {
+            url.append(sep).append("maxRecords=").append(maxRecords);
+            sep = '&';
+        }
+        if (locator != null) {
+            url.append(sep).append("locator=").append(URLEncoder.encode(locator, StandardCharsets.UTF_8));
+        }
+        String u = url.toString();
+        return send(() -> HttpRequest.newBuilder()
+                        .uri(URI.create(u))
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("Authorization", "Bearer " + accessToken)
+                        .header("Accept", "text/csv")
+                        .GET()
+                        .build(),
+                handler, DEFAULT_MAX_ATTEMPTS, "query results " + jobId);
+    }
+
+    public static boolean isTerminalState(String state) {
+        return "JobComplete".equals(state) || "Failed".equals(state) || "Aborted".equals(state);
+    }
+
+    // -------------------------
+    // Internals
+    // -------------------------
+
+    private CompletableFuture<HttpResponse<String>> upload(
+            String jobId, Supplier<HttpRequest.BodyPublisher> body, int maxAttempts) {
+        return send(() -> HttpRequest.newBuilder()
+                        .uri(URI.create(ingestUrl(jobId + "/batches")))
+                        .timeout(REQUEST_TIMEOUT)
+                        .header("Authorization", "Bearer " + accessToken)
+                        .header("Content-Type", "text/csv; charset=UTF-8")
+                        .header("Accept", "application/json")
+                        .PUT(body.get())
+                        .build(),
+                HttpResponse.BodyHandlers.ofString(), maxAttempts, "CSV upload " + jobId);
+    }
+
+    private CompletableFuture<String> patchState(String jobId, String state) {
+        String body = "{\"state\":\"" + state + "\"}";
+        return send(() -> jsonRequest(ingestUrl(jobId))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString(), DEFAULT_MAX_ATTEMPTS, state + " " + jobId)
+                .thenApply(resp -> jobId);
+    }
+
+    private void pollOnce(String jobId, Duration interval, long deadline,
+                          CompletableFuture<Map<String, String>> result) {
+        getJobInfo(jobId).whenComplete((info, err) -> {
+            if (err != null) {
+                result.completeExceptionally(unwrap(err));
+                return;
+            }
+            if (isTerminalState(info.get("state"))) {
+                result.complete(info);
+                return;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                result.completeExceptionally(new IOException(
+                        "ジョブの完了待ちがタイムアウトしました jobId=" + jobId + " state=" + info.get("state")));
+                return;
+            }
+            timer.schedule(() -> pollOnce(jobId, interval, deadline, result),
+                    interval.toMillis(), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * 送信＋再試行。request は試行ごとに作り直す（送信本体を先頭から送るため）。
+     * 2xx 以外で再試行しないもの・回数切れは IOException（body 先頭2000文字付き）で失敗する。
+     */
+    private <T> CompletableFuture<HttpResponse<T>> send(
+            Supplier<HttpRequest> request,
+            HttpResponse.BodyHandler<T> handler,
+            int maxAttempts,
+            String what) {
+        if (maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts must be > 0");
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        attempt(request, handler, 1, maxAttempts, what, result);
+        return result;
+    }
+
+    private <T> void attempt(
+            Supplier<HttpRequest> request,
+            HttpResponse.BodyHandler<T> handler,
+            int attempt,
+            int maxAttempts,
+            String what,
+            CompletableFuture<HttpResponse<T>> result) {
+
+        HttpRequest req;
+        try {
+            req = request.get();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(unwrap(e));
+            return;
+        }
+
+        // 送信枠が空くまで待ってから送る（待つ間はスレッドを使わない）
+        limiter.acquire().thenAccept(permit -> {
+            CompletableFuture<HttpResponse<T>> sent;
+            try {
+                sent = client.sendAsync(req, handler);
+            } catch (RuntimeException e) {
+                permit.release();
+                result.completeExceptionally(e);
+                return;
+            }
+            sent.whenComplete((resp, err) -> onResponse(permit, resp, err, request, handler, attempt, maxAttempts, what, result));
+        });
+    }
+
+    private <T> void onResponse(
+            BulkRateLimiter.Permit permit,
+            HttpResponse<T> resp,
+            Throwable err,
+            Supplier<HttpRequest> request,
+            HttpResponse.BodyHandler<T> handler,
+            int attempt,
+            int maxAttempts,
+            String what,
+            CompletableFuture<HttpResponse<T>> result) {
+        Long retryAfterSeconds = null;
+
+        if (err != null) {
+            permit.release();
+            Throwable cause = unwrap(err);
+            // タイムアウトも一時障害扱いでリトライ対象にする（BulkV2Uploader と同じ）
+            if (!(cause instanceof HttpTimeoutException) || attempt == maxAttempts) {
+                result.completeExceptionally(cause);
+                return;
+            }
+        } else {
+            int code = resp.statusCode();
+            retryAfterSeconds = BulkV2Uploader.parseRetryAfterSeconds(resp);
+            permit.onResponse(code, retryAfterSeconds);
+            if (code / 100 == 2) {
+                result.complete(resp);
+                return;
+            }
+            if (!BulkV2Uploader.isRetryable(code) || attempt == maxAttempts) {
+                result.completeExceptionally(new IOException(
+                        what + " failed. status=" + code + " body=" + BulkV2Uploader.truncate(bodyText(resp), 2000)));
+                return;
+            }
+            discard(resp); // ストリームで受けている時は接続を返す
+        }
+
+        long delayMs = BulkV2Uploader.backoffMillis(retryAfterSeconds, attempt);
+        timer.schedule(() -> attempt(request, handler, attempt + 1, maxAttempts, what, result),
+                delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private HttpRequest.Builder jsonRequest(String url) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", "Bearer " + accessToken)
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .header("Accept", "application/json");
+    }
+
+    private String ingestUrl(String path) {
+        String url = instanceBaseUrl + "/services/data/" + apiVersion + "/jobs/ingest";
+        return path.isEmpty() ? url : url + "/" + path;
+    }
+
+    private String queryUrl(String path) {
+        return instanceBaseUrl + "/services/data/" + apiVersion + "/jobs/query/" + path;
+    }
+
+    private static String bodyText(HttpResponse<?> resp) {
+        Object b = resp.body();
+        if (b instanceof byte[]) return new String((byte[]) b, StandardCharsets.UTF_8);
+        if (b instanceof InputStream) {
+            try (InputStream in = (InputStream) b) {
+                return new String(in.readNBytes(2000), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                return "(unreadable: " + e + ")";
+            }
+        }
+        return b instanceof String ? (String) b : String.valueOf(b);
+    }
+
+    private static void discard(HttpResponse<?> resp) {
+        if (resp.body() instanceof InputStream) {
+            try {
+                ((InputStream) resp.body()).close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        while (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BulkPartOrchestrator / BulkQueryResultFetcher を MockBulkApiServer に向けて動かし、
+ * 並行数・再試行・ページ順が想定どおりかを確かめる動作確認（Salesforce 無しで動く）。
+ * どれかが外れたら IllegalStateException で終わる（終了コード≠0）。
+ *
+ * 確認すること：
+ * - 同時に動いたジョブ数 <= maxConcurrentJobs
+ * - 503 を返したアップロードが再試行され、全パートが JobComplete になる
+ * - クエリ結果がページ順で、ヘッダーが1回だけのCSVとして読める
+ * - 同時に受信中だったページ数 <= prefetchPages
+ *
+ * 使い方：
+ *   java BulkApiMockCheck [parts] [rowsPerPart] [maxConcurrentJobs] [queryRows] [pageSize] [prefetchPages]
+ *   例: java BulkApiMockCheck 8 200 3 2500 100 3
+ */
+public final class BulkApiMockCheck {
+
+    private static final String FAIL_VALUE = "NG";
+
+    private BulkApiMockCheck() {}
+
+    public static void main(String[] args) throws Exception {
+        int parts = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int rowsPerPart = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int maxConcurrentJobs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int queryRows = args.length > 3 ? Integer.parseInt(args[3]) : 2500;
+        int pageSize = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        int prefetchPages = args.length > 5 ? Integer.parseInt(args[5]) : 3;
+
+        File work = Files.createTempDirectory("bulk-mock-check").toFile();
+        try (MockBulkApiServer mock = MockBulkApiServer.start(3, 1, FAIL_VALUE)) {
+            // 既定の org 上限（10件/秒）だと送信が間引かれて並行・先読みが起きないので、モック用に緩める
+            BulkRateLimiter.register(mock.baseUrl(), new BulkRateLimiter(1000.0, 100, 32, 32));
+            BulkApiAsyncClient api = new BulkApiAsyncClient(mock.baseUrl(), "v60.0", "dummy");
+
+            checkIngest(mock, api, work, parts, rowsPerPart, maxConcurrentJobs);
+            checkQuery(mock, api, queryRows, pageSize, prefetchPages);
+        } finally {
+            deleteRecursively(work);
+        }
+        System.out.println("OK");
+    }
+
+    private static void checkIngest(MockBulkApiServer mock, BulkApiAsyncClient api, File work,
+                                    int parts, int rowsPerPart, int maxConcurrentJobs) throws IOException {
+        List<File> files = new ArrayList<>(parts);
+        long expectedFailed = 0;
+        for (int p = 0; p < parts; p++) {
+            File f = new File(work, String.format("payload_%03d.csv", p + 1));
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(f.toPath()), StandardCharsets.UTF_8))) {
+                w.write("LinkKey__c,Name\n");
+                for (int i = 0; i < rowsPerPart; i++) {
+                    boolean ng = i % 50 == 0;
+                    if (ng) expectedFailed++;
+                    w.write("K" + p + "-" + i + "," + (ng ? FAIL_VALUE : "store") + "-" + i + "\n");
+                }
+            }
+            files.add(f);
+        }
+
+        BulkPartOrchestrator orch = new BulkPartOrchestrator(
+                api, maxConcurrentJobs, Duration.ofMillis(20), Duration.ofMinutes(1), new File(work, "results"), 3);
+
+        long start = System.nanoTime();
+        List<BulkPartOrchestrator.PartReport> reports = orch.run(files, "RetailStore", "upsert", "LinkKey__c");
+        long ms = (System.nanoTime() - start) / 1_000_000L;
+
+        long processed = 0;
+        long failed = 0;
+        for (BulkPartOrchestrator.PartReport r : reports) {
+            check(r.error == null && "JobComplete".equals(r.state), "パートが完了していない: " + r);
+            processed += r.recordsProcessed;
+            failed += r.recordsFailed;
+        }
+
+        System.out.println(String.format("ingest: parts=%d jobs=%d maxOpenJobs=%d (limit %d) rejectedUploads=%d processed=%d failed=%d  %d ms",
+                reports.size(), mock.jobsCreated(), mock.maxConcurrentOpenJobs(), maxConcurrentJobs,
+                mock.uploadsRejected(), processed, failed, ms));
+
+        check(mock.maxConcurrentOpenJobs() <= maxConcurrentJobs,
+                "同時ジョブ数が上限を超えた: " + mock.maxConcurrentOpenJobs() + " > " + maxConcurrentJobs);
+        check(mock.uploadsRejected() == 1, "503 のアップロードが発生していない");
+        check(mock.jobsCreated() == parts, "503 の再試行でジョブが作り直された: jobs=" + mock.jobsCreated());
+        check(processed == (long) parts * rowsPerPart, "処理件数が合わない: " + processed);
+        check(failed == expectedFailed, "失敗件数が合わない: " + failed + " != " + expectedFailed);
+    }
+
+    private static void checkQuery(MockBulkApiServer mock, BulkApiAsyncClient api,
+                                   int queryRows, int pageSize, int prefetchPages) throws IOException {
+        StringBuilder csv = new StringBuilder("Id,Name\n");
+        for (int i = 0; i < queryRows; i++) {
+            csv.append(String.format("a00%07d", i)).append(",store-").append(i).append('\n');
+        }
+        String jobId = mock.addQueryResult(csv.toString());
+        mock.setQueryPageDelayMillis(50);
+
+        BulkQueryResultFetcher fetcher = new BulkQueryResultFetcher(api, pageSize, prefetchPages);
+        String got;
+        int pages;
+        long start = System.nanoTime();
+        try (BulkQueryResultFetcher.PageStream in = fetcher.open(jobId)) {
+            got = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            pages = in.pagesRead();
+        }
+        long ms = (System.nanoTime() - start) / 1_000_000L;
+
+        int headers = 0;
+        for (String line : got.split("\n")) {
+            if (line.equals("Id,Name")) headers++;
+        }
+
+        System.out.println(String.format("query:  rows=%d pages=%d headers=%d maxPagesInFlight=%d (limit %d)  %d ms",
+                queryRows, pages, headers, mock.maxConcurrentQueryPages(), prefetchPages, ms));
+
+        check(headers == 1, "ヘッダーが1回ではない: " + headers);
+        check(got.equals(csv.toString()), "ページ順・内容が元のCSVと一致しない");
+        check(mock.maxConcurrentQueryPages() <= prefetchPages,
+                "先読みページ数が上限を超えた: " + mock.maxConcurrentQueryPages() + " > " + prefetchPages);
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok) throw new IllegalStateException(message);
+    }
+
+    private static void deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) deleteRecursively(c);
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,170 @@
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * JdbcBulkInsertRepository の各 Strategy を組み込みDB(H2/Derby)で比べるためのベンチマーク。
+ * JDBCドライバ(h2 / derby)はクラスパスに置いておくこと。
+ *
+ * 使い方：
+ *   java BulkInsertBenchmark [jdbcUrl] [rows] [chunkSize]
+ *   例: java BulkInsertBenchmark "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1" 200000 1000
+ *       java BulkInsertBenchmark "jdbc:derby:memory:bench;create=true" 200000 1000
+ *
+ * INSERT_ALL は Oracle 専用構文なので、H2/Derby では「未対応」と表示されるのが正常。
+ */
+public final class BulkInsertBenchmark {
+
+    private static final String TABLE = "BENCH_ROW";
+
+    private BulkInsertBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        DataSource ds = new DriverManagerDataSource(url);
+
+        LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+        columns.put("ID", "id");
+        columns.put("NAME", "name");
+        columns.put("AMOUNT", "amount");
+        columns.put("CREATED_AT", "createdAt");
+        DtoColumnBinding<BenchRow> binding = DtoColumnBinding.of(BenchRow.class, columns);
+
+        List<BenchRow> data = new ArrayList<>(rows);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows; i++) {
+            data.add(new BenchRow(i, "store-" + i, BigDecimal.valueOf(i % 100_000, 2), new Timestamp(now + i)));
+        }
+
+        System.out.println("url=" + url + " rows=" + rows + " chunkSize=" + chunkSize);
+
+        for (JdbcBulkInsertRepository.Strategy strategy : JdbcBulkInsertRepository.Strategy.values()) {
+            recreateTable(ds);
+
+            BulkInsertRepository<BenchRow> repo =
+                    new JdbcBulkInsertRepository<>(ds, TABLE, binding, strategy);
+
+            try {
+                long start = System.nanoTime();
+                for (int from = 0; from < rows; from += chunkSize) {
+                    repo.insert(data.subList(from, Math.min(rows, from + chunkSize)));
+                }
+                long ms = (System.nanoTime() - start) / 1_000_000L;
+
+                long count = countRows(ds);
+                System.out.println(String.format("%-17s %8d ms  %10.0f rows/s  (count=%d)",
+                        strategy, ms, rows * 1000.0 / Math.max(1, ms), count));
+
+            } catch (RuntimeException e) {
+                System.out.println(String.format("%-17s 未対応 (%s)", strategy,
+                        e.getCause() == null ? e.getMessage() : e.getCause().getMessage()));
+            }
+        }
+    }
+
+    private static void recreateTable(DataSource ds) throws SQLException {
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+            try {
+                st.execute("DROP TABLE " + TABLE);
+            } catch (SQLException ignore) {
+                // 初回は存在しない
+            }
+            st.execute("CREATE TABLE " + TABLE + " ("
+                    + "ID BIGINT NOT NULL PRIMARY KEY, "
+                    + "NAME VARCHAR(100), "
+                    + "AMOUNT DECIMAL(12,2), "
+                    + "CREATED_AT TIMESTAMP)");
+        }
+    }
+
+    private static long countRows(DataSource ds) throws SQLException {
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + TABLE)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    public static final class BenchRow {
+        private Long id;
+        private String name;
+        private BigDecimal amount;
+        private Timestamp createdAt;
+
+        public BenchRow() {}
+
+        BenchRow(long id, String name, BigDecimal amount, Timestamp createdAt) {
+            this.id = id;
+            this.name = name;
+            this.amount = amount;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /** ベンチ用の最小 DataSource（毎回 DriverManager から取る） */
+    private static final class DriverManagerDataSource implements DataSource {
+        private final String url;
+
+        DriverManagerDataSource(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return DriverManager.getConnection(url);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return DriverManager.getConnection(url, username, password);
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            throw new SQLException("unwrap not supported");
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多数の Bulk ジョブの完了待ちを1つのスケジューラでまとめて行う。
+ * - watch(jobId) で CompletableFuture<JobResult> を返し、JobComplete / Failed / Aborted で完了する
+ * - 状態取得のレスポンスは TopLevelJsonFields で直下のキーだけ読む（JsonNode の木を作らない）
+ * - ポーリング間隔はジョブごとに処理の進み具合から決める：
+ *     ・進んでいない（キュー待ち・開始直前）間は minInterval から 1.5 倍ずつ伸ばす
+ *     ・件数が分かっていて進んでいるなら、残り件数 / 処理速度 で出した残り時間の半分
+ *     ・件数が分からず進んでいるなら 1.25 倍ずつ伸ばす
+ *   いずれも [minInterval, maxInterval] に収める。小さいジョブはすぐ拾い、大きいジョブは問い合わせ回数を減らす
+ * - 送信は BulkApiAsyncClient 経由なので、BulkRateLimiter と再試行もそのまま効く
+ *
+ * 使い方：
+ *   BulkJobPoller poller = new BulkJobPoller(api, Duration.ofSeconds(1), Duration.ofSeconds(30));
+ *   CompletableFuture<BulkJobPoller.JobResult> f = poller.watch(jobId, part.records, Duration.ofHours(2));
+ *   f.thenAccept(r -> log(r.state + " " + r.numberRecordsProcessed));
+ */
+public final class BulkJobPoller {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bulk-job-poller");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final BulkApiAsyncClient api;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final Map<String, Tracked> watching = new ConcurrentHashMap<>();
+
+    public BulkJobPoller(BulkApiAsyncClient api, Duration minInterval, Duration maxInterval) {
+        this.api = Objects.requireNonNull(api, "api");
+        this.minIntervalMs = Math.max(1, minInterval.toMillis());
+        this.maxIntervalMs = Math.max(minIntervalMs, maxInterval.toMillis());
+    }
+
+    /**
+     * ジョブの完了を待つ。同じ jobId を監視中なら同じ Future を返す。
+     *
+     * @param expectedRecords アップロードした件数（分からなければ 0 以下）
+     * @param timeout         これを過ぎたら IOException で失敗する（ジョブ自体は止めない）
+     */
+    public CompletableFuture<JobResult> watch(String jobId, long expectedRecords, Duration timeout) {
+        Objects.requireNonNull(jobId, "jobId");
+        Tracked t = watching.computeIfAbsent(jobId, id -> {
+            Tracked n = new Tracked(id, expectedRecords, System.nanoTime() + timeout.toNanos(), minIntervalMs);
+            SCHEDULER.schedule(() -> poll(n), n.intervalMs, TimeUnit.MILLISECONDS);
+            return n;
+        });
+        return t.future;
+    }
+
+    /** 監視中のジョブ数 */
+    public int watchingCount() {
+        return watching.size();
+    }
+
+    // -------------------------
+    // Internals
+    // -------------------------
+
+    private static final class Tracked {
+        final String jobId;
+        final long expectedRecords;
+        final long deadlineNanos;
+        final long startNanos = System.nanoTime();
+        final CompletableFuture<JobResult> future = new CompletableFuture<>();
+
+        // poll は1本ずつ順に動くので同期不要
+        long intervalMs;
+        long lastProcessed;
+        long lastAtNanos = startNanos;
+        int polls;
+
+        Tracked(String jobId, long expectedRecords, long deadlineNanos, long intervalMs) {
+            this.jobId = jobId;
+            this.expectedRecords = expectedRecords;
+            this.deadlineNanos = deadlineNanos;
+            this.intervalMs = intervalMs;
+        }
+    }
+
+    private void poll(Tracked t) {
+        if (t.future.isDone()) { // 呼び出し側がキャンセルした
+            watching.remove(t.jobId, t);
+            return;
+        }
+        api.getJobInfoJson(t.jobId).whenComplete((json, err) -> {
+            if (err != null) {
+                finish(t, null, err instanceof CompletionException && err.getCause() != null ? err.getCause() : err);
+                return;
+            }
+
+            JobResult r;
+            try {
+                t.polls++;
+                r = JobResult.parse(json, t.polls, (System.nanoTime() - t.startNanos) / 1_000_000L);
+            } catch (RuntimeException e) {
+                finish(t, null, e);
+                return;
+            }
+
+            if (BulkApiAsyncClient.isTerminalState(r.state)) {
+                finish(t, r, null);
+                return;
+            }
+            long now = System.nanoTime();
+            if (now - t.deadlineNanos >= 0) {
+                finish(t, null, new IOException("ジョブの完了待ちがタイムアウトしました jobId=" + t.jobId + " state=" + r.state));
+                return;
+            }
+
+            t.intervalMs = nextIntervalMs(t, r.numberRecordsProcessed, now);
+            t.lastProcessed = r.numberRecordsProcessed;
+            t.lastAtNanos = now;
+            SCHEDULER.schedule(() -> poll(t), t.intervalMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private long nextIntervalMs(Tracked t, long processed, long now) {
+        long delta = processed - t.lastProcessed;
+        double elapsedSec = (now - t.lastAtNanos) / 1_000_000_000.0;
+        long next;
+        if (delta <= 0 || elapsedSec <= 0) {
+            next = (long) (t.intervalMs * 1.5);
+        } else if (t.expectedRecords > 0) {
+            double rate = delta / elapsedSec;
+            double remainingSec = Math.max(0, t.expectedRecords - processed) / rate;
+            next = (long) (remainingSec * 1000 / 2);
+        } else {
+            next = (long) (t.intervalMs * 1.25);
+        }
+        return Math.max(minIntervalMs, Math.min(maxIntervalMs, next));
+    }
+
+    private void finish(Tracked t, JobResult r, Throwable err) {
+        watching.remove(t.jobId, t);
+        if (err != null) t.future.completeExceptionally(err);
+        else t.future.complete(r);
+    }
+
+    // -------------------------
+    // 結果
+    // -------------------------
+
+    public static final class JobResult {
+        public final String jobId;
+        public final String state;                 // JobComplete / Failed / Aborted
+        public final String object;
+        public final String operation;
+        public final long numberRecordsProcessed;
+        public final long numberRecordsFailed;
+        public final String errorMessage;          // Failed の時の理由（無ければ null）
+        public final int polls;                    // 完了までに状態を取った回数
+        public final long waitedMillis;            // watch してから完了までの時間
+        public final Map<String, String> fields;   // JOB_INFO_FIELDS の生の値
+
+        private JobResult(Map<String, String> f, int polls, long waitedMillis) {
+            this.jobId = f.get("id");
+            this.state = f.get("state");
+            this.object = f.get("object");
+            this.operation = f.get("operation");
+            this.numberRecordsProcessed = parseLong(f.get("numberRecordsProcessed"));
+            this.numberRecordsFailed = parseLong(f.get("numberRecordsFailed"));
+            this.errorMessage = f.get("errorMessage");
+            this.polls = polls;
+            this.waitedMillis = waitedMillis;
+            this.fields = Collections.unmodifiableMap(f);
+        }
+
+        static JobResult parse(String json, int polls, long waitedMillis) {
+            return new JobResult(TopLevelJsonFields.pick(json, BulkApiAsyncClient.JOB_INFO_FIELDS), polls, waitedMillis);
+        }
+
+        private static long parseLong(String s) {
+            if (s == null || s.isEmpty()) return 0;
+            try {
+                return Long.parseLong(s);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "JobResult{jobId=" + jobId + ", state=" + state + ", processed=" + numberRecordsProcessed
+                    + ", failed=" + numberRecordsFailed + ", polls=" + polls + ", waitedMs=" + waitedMillis
+                    + (errorMessage == null ? "" : ", errorMessage=" + errorMessage) + "}";
+        }
+    }
+}
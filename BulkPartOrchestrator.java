@@ -0,0 +1,278 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分割CSV（listParts / RotatingCsvWriter.parts の出力）を、1パート = 1 Bulk ingest ジョブとして
+ * 最大 maxConcurrentJobs 本ずつ並行に流す。
+ * - 1パートの流れ：ジョブ作成 → アップロード → UploadComplete → 完了待ち → 結果CSV（成功/失敗）の保存
+ * - 1本終わるたびに次のパートを始める（常に最大 maxConcurrentJobs 本が動いている）
+ * - どこかで失敗したパートは PartReport.error に入れて、他のパートは続ける
+ *   （ジョブ作成後にアップロード等で失敗したら、そのジョブは Aborted にしておく）
+ * - 完了待ちは BulkJobPoller（全ジョブで1つのスケジューラ、進み具合で間隔を変える）なので、
+ *   並行数を増やしてもスレッドは増えない。パートの件数を渡すので、処理速度から残り時間を見て間隔を決める
+ *   （runParts は PartInfo.records、run はパートを読んで数える）
+ *
+ * 使い方（sp_2_a.java の逐次ループの置き換え）：
+ *   BulkApiAsyncClient api = new BulkApiAsyncClient(base, "v60.0", token);
+ *   BulkPartOrchestrator orch = new BulkPartOrchestrator(api, 4, Duration.ofSeconds(5), Duration.ofHours(2), resultsDir, 8);
+ *   List<BulkPartOrchestrator.PartReport> reports = orch.run(listParts(outDir, "payload"), "RetailStore", "upsert", "LinkKey__c");
+ *   BulkPartOrchestrator.writeReportCsv(new File(resultsDir, "payload_report.csv"), reports);
+ *   // RotatingCsvWriter / PartitionedCsvExporter の出力なら件数を数え直さない
+ *   reports = orch.runParts(writer.parts(), "RetailStore", "upsert", "LinkKey__c");
+ */
+public final class BulkPartOrchestrator {
+
+    // 完了待ちの間隔の上限（下限はコンストラクタの pollInterval）
+    private static final Duration MAX_POLL_INTERVAL = Duration.ofSeconds(30);
+
+    private final BulkApiAsyncClient api;
+    private final BulkJobPoller poller;
+    private final int maxConcurrentJobs;
+    private final Duration jobTimeout;
+    private final File resultsDir;
+    private final int uploadMaxAttempts;
+
+    /**
+     * @param maxConcurrentJobs 同時に動かすジョブ数（org のジョブ上限・API上限に合わせる）
+     * @param pollInterval      完了待ちの最短間隔（進み具合に応じて30秒まで伸ばす）
+     * @param jobTimeout        1ジョブの完了待ちの上限
+     * @param resultsDir        結果CSVの保存先（{パート名}_success.csv / {パート名}_failed.csv）
+     * @param uploadMaxAttempts アップロードの最大試行回数
+     */
+    public BulkPartOrchestrator(
+            BulkApiAsyncClient api,
+            int maxConcurrentJobs,
+            Duration pollInterval,
+            Duration jobTimeout,
+            File resultsDir,
+            int uploadMaxAttempts) {
+        if (maxConcurrentJobs <= 0) throw new IllegalArgumentException("maxConcurrentJobs must be > 0");
+        if (uploadMaxAttempts <= 0) throw new IllegalArgumentException("uploadMaxAttempts must be > 0");
+        this.api = Objects.requireNonNull(api, "api");
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.poller = new BulkJobPoller(api, pollInterval,
+                pollInterval.compareTo(MAX_POLL_INTERVAL) > 0 ? pollInterval : MAX_POLL_INTERVAL);
+        this.jobTimeout = Objects.requireNonNull(jobTimeout, "jobTimeout");
+        this.resultsDir = Objects.requireNonNull(resultsDir, "resultsDir");
+        this.uploadMaxAttempts = uploadMaxAttempts;
+    }
+
+    /** 全パートを流して、終わるまで待つ。戻り値は parts と同じ順 */
+    public List<PartReport> run(List<File> parts, String object, String operation, String externalIdField) throws IOException {
+        try {
+            return runAsync(parts, object, operation, externalIdField).join();
+        } catch (CompletionException e) {
+            throw new IOException("パートの投入に失敗しました", e.getCause());
+        }
+    }
+
+    /** run の非同期版。パート単位の失敗は PartReport に入るので、この Future 自体は通常失敗しない */
+    public CompletableFuture<List<PartReport>> runAsync(List<File> parts, String object, String operation, String externalIdField) {
+        Objects.requireNonNull(parts, "parts");
+        return launchAll(parts, null, object, operation, externalIdField);
+    }
+
+    /** run の PartInfo 版。件数（PartInfo.records）を完了待ちの間隔の見積もりに使う */
+    public List<PartReport> runParts(List<RotatingCsvWriter.PartInfo> parts, String object, String operation, String externalIdField) throws IOException {
+        try {
+            return runPartsAsync(parts, object, operation, externalIdField).join();
+        } catch (CompletionException e) {
+            throw new IOException("パートの投入に失敗しました", e.getCause());
+        }
+    }
+
+    /** runParts の非同期版 */
+    public CompletableFuture<List<PartReport>> runPartsAsync(List<RotatingCsvWriter.PartInfo> parts, String object, String operation, String externalIdField) {
+        Objects.requireNonNull(parts, "parts");
+        List<File> files = new ArrayList<>(parts.size());
+        long[] records = new long[parts.size()];
+        for (int i = 0; i < parts.size(); i++) {
+            RotatingCsvWriter.PartInfo pi = parts.get(i);
+            if (pi.file == null) throw new IllegalArgumentException("ファイルの無いパートは投入できません: " + pi);
+            files.add(pi.file);
+            records[i] = pi.records;
+        }
+        return launchAll(files, records, object, operation, externalIdField);
+    }
+
+    /** @param records parts[i] の件数（null ならパートを読んで数える） */
+    private CompletableFuture<List<PartReport>> launchAll(
+            List<File> parts, long[] records, String object, String operation, String externalIdField) {
+        Objects.requireNonNull(object, "object");
+        Objects.requireNonNull(operation, "operation");
+        if (!resultsDir.exists() && !resultsDir.mkdirs()) {
+            return CompletableFuture.failedFuture(new IOException("Failed to create dir: " + resultsDir.getAbsolutePath()));
+        }
+
+        PartReport[] reports = new PartReport[parts.size()];
+        CompletableFuture<List<PartReport>> all = new CompletableFuture<>();
+        if (parts.isEmpty()) {
+            all.complete(Collections.emptyList());
+            return all;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        Runnable[] launch = new Runnable[1];
+        launch[0] = () -> {
+            int i = next.getAndIncrement();
+            if (i >= parts.size()) return;
+            CompletableFuture<Long> count = records != null
+                    ? CompletableFuture.completedFuture(records[i])
+                    : CompletableFuture.supplyAsync(() -> countRecords(parts.get(i)));
+            count.thenCompose(n -> runPart(parts.get(i), n, object, operation, externalIdField)).whenComplete((r, err) -> {
+                reports[i] = r; // runPart は失敗も PartReport にして返す
+                if (done.incrementAndGet() == parts.size()) {
+                    List<PartReport> list = new ArrayList<>(parts.size());
+                    Collections.addAll(list, reports);
+                    all.complete(list);
+                } else {
+                    launch[0].run();
+                }
+            });
+        };
+        for (int k = 0; k < Math.min(maxConcurrentJobs, parts.size()); k++) {
+            launch[0].run();
+        }
+        return all;
+    }
+
+    private CompletableFuture<PartReport> runPart(File part, long records, String object, String operation, String externalIdField) {
+        long start = System.nanoTime();
+        String base = baseName(part);
+        Path successFile = new File(resultsDir, base + "_success.csv").toPath();
+        Path failedFile = new File(resultsDir, base + "_failed.csv").toPath();
+        String[] jobId = new String[1];
+
+        return api.createJob(object, operation, externalIdField)
+                .thenCompose(id -> {
+                    jobId[0] = id;
+                    return api.uploadCsv(id, part.toPath(), uploadMaxAttempts);
+                })
+                .thenCompose(resp -> api.closeJob(jobId[0]))
+                .thenCompose(id -> poller.watch(id, records, jobTimeout))
+                .thenCompose(info -> {
+                    if (!"JobComplete".equals(info.state)) {
+                        // Failed / Aborted は結果CSVが無い
+                        return CompletableFuture.completedFuture(PartReport.of(part, jobId[0], info, null, null, null, start));
+                    }
+                    return api.downloadResults(jobId[0], "successfulResults", successFile)
+                            .thenCompose(s -> api.downloadResults(jobId[0], "failedResults", failedFile))
+                            .thenApply(f -> PartReport.of(part, jobId[0], info, successFile.toFile(), failedFile.toFile(), null, start));
+                })
+                .handle((r, err) -> {
+                    if (err == null) return CompletableFuture.completedFuture(r);
+                    Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                    PartReport failed = PartReport.of(part, jobId[0], null, null, null, cause, start);
+                    if (jobId[0] == null) return CompletableFuture.completedFuture(failed);
+                    // 途中で止まったジョブは残さない（中止に失敗しても元の失敗を報告する）
+                    return api.abortJob(jobId[0]).handle((x, e) -> failed);
+                })
+                .thenCompose(f -> f);
+    }
+
+    /**
+     * パートのレコード数（ヘッダーを除く）。数えられなければ -1（完了待ちは件数なしの間隔になる）。
+     * 区切り・クォート・改行だけを見るので、ISO-8859-1 で読めば UTF-8 / Shift_JIS でも件数は合う。
+     */
+    private static long countRecords(File part) {
+        try (Reader r = new BufferedReader(new InputStreamReader(new FileInputStream(part), StandardCharsets.ISO_8859_1), 1 << 16)) {
+            CsvToolkit.CsvParser parser = new CsvToolkit.CsvParser(r);
+            int[] none = new int[0];
+            String[] out = new String[0];
+            long n = -1; // ヘッダー分
+            while (parser.nextRecord(none, out)) n++;
+            return Math.max(n, 0);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static String baseName(File part) {
+        String name = part.getName();
+        return name.endsWith(".csv") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    /** パートごとの結果を CSV（part,job_id,state,processed,failed,elapsed_ms,error）で書く */
+    public static void writeReportCsv(File out, List<PartReport> reports) throws IOException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8))) {
+            CsvToolkit.CsvWriter csv = new CsvToolkit.CsvWriter(w);
+            csv.writeRecord(List.of("part", "job_id", "state", "processed", "failed", "elapsed_ms", "error"));
+            for (PartReport r : reports) {
+                csv.writeRecord(List.of(
+                        r.part.getName(),
+                        r.jobId == null ? "" : r.jobId,
+                        r.state == null ? "" : r.state,
+                        Long.toString(r.recordsProcessed),
+                        Long.toString(r.recordsFailed),
+                        Long.toString(r.elapsedMillis),
+                        r.error == null ? "" : String.valueOf(r.error.getMessage())));
+            }
+            csv.flush();
+        }
+    }
+
+    // -------------------------
+    // パートごとの結果
+    // -------------------------
+
+    public static final class PartReport {
+        public final File part;
+        public final String jobId;           // 作成前に失敗したら null
+        public final String state;           // JobComplete / Failed / Aborted（失敗時は null）
+        public final long recordsProcessed;
+        public final long recordsFailed;
+        public final File successResults;    // JobComplete 以外は null
+        public final File failedResults;     // JobComplete 以外は null
+        public final Throwable error;        // 途中の通信・API エラー（無ければ null）
+        public final long elapsedMillis;
+
+        private PartReport(File part, String jobId, String state, long recordsProcessed, long recordsFailed,
+                           File successResults, File failedResults, Throwable error, long elapsedMillis) {
+            this.part = part;
+            this.jobId = jobId;
+            this.state = state;
+            this.recordsProcessed = recordsProcessed;
+            this.recordsFailed = recordsFailed;
+            this.successResults = successResults;
+            this.failedResults = failedResults;
+            this.error = error;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        static PartReport of(File part, String jobId, BulkJobPoller.JobResult info,
+                             File success, File failed, Throwable error, long startNanos) {
+            return new PartReport(
+                    part,
+                    jobId,
+                    info == null ? null : info.state,
+                    info == null ? 0 : info.numberRecordsProcessed,
+                    info == null ? 0 : info.numberRecordsFailed,
+                    success,
+                    failed,
+                    error,
+                    (System.nanoTime() - startNanos) / 1_000_000L);
+        }
+
+        /** ジョブが JobComplete で、失敗レコードも無い */
+        public boolean ok() {
+            return error == null && "JobComplete".equals(state) && recordsFailed == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "PartReport{part=" + part.getName() + ", jobId=" + jobId + ", state=" + state
+                    + ", processed=" + recordsProcessed + ", failed=" + recordsFailed
+                    + ", elapsedMs=" + elapsedMillis + (error == null ? "" : ", error=" + error) + "}";
+        }
+    }
+}
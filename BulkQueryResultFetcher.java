@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bulk query の結果を Sforce-Locator のページ単位で先読みしながら、1本のCSVストリームとして読む。
+ * - 1ページ maxRecords 件。次ページの locator はレスポンスヘッダーで分かるので、
+ *   前ページの本体を受信している間に次ページを始める（最大 prefetchPages ページまで先行）
+ * - ストリームはページ順。2ページ目以降の先頭行（ヘッダー）は落とすので、1本のCSVと同じに見える
+ * - 読む側（AbstractCsvSyncExecutor.execute など）が前のページを処理している間に後ろのページを取るので、
+ *   ダウンロードとDB登録が重なる
+ * - 送信は BulkApiAsyncClient 経由（BulkRateLimiter と再試行が効く）
+ *
+ * メモリには最大 prefetchPages ページ分（受信中含む）を持つ。
+ *
+ * 使い方（sample.java の getQueryResult → execute の置き換え）：
+ *   BulkQueryResultFetcher fetcher = new BulkQueryResultFetcher(api, 50_000, 3);
+ *   fetcher.fetchInto(jobId, new RetailStoreSyncExecutor(repository, assembler));
+ */
+public final class BulkQueryResultFetcher {
+
+    private static final String NO_MORE_PAGES = "null";
+
+    private final BulkApiAsyncClient api;
+    private final int maxRecordsPerPage;
+    private final int prefetchPages;
+
+    /**
+     * @param maxRecordsPerPage 1ページの最大件数（0 以下ならサーバー既定）
+     * @param prefetchPages     同時に持つ（受信中・読み待ち）ページ数の上限
+     */
+    public BulkQueryResultFetcher(BulkApiAsyncClient api, int maxRecordsPerPage, int prefetchPages) {
+        if (prefetchPages <= 0) throw new IllegalArgumentException("prefetchPages must be > 0");
+        this.api = Objects.requireNonNull(api, "api");
+        this.maxRecordsPerPage = maxRecordsPerPage;
+        this.prefetchPages = prefetchPages;
+    }
+
+    /** 全ページをつないだCSV（ヘッダーは1回）。読み終わったら close すること */
+    public PageStream open(String jobId) {
+        PageStream s = new PageStream(Objects.requireNonNull(jobId, "jobId"));
+        s.start();
+        return s;
+    }
+
+    /** 結果を executor.execute に流す（ダウンロードと登録を重ねる） */
+    public <T> void fetchInto(String jobId, AbstractCsvSyncExecutor<T> executor) throws Exception {
+        try (PageStream in = open(jobId)) {
+            executor.execute(in);
+        }
+    }
+
+    // -------------------------
+    // ページをつないだストリーム
+    // -------------------------
+
+    public final class PageStream extends InputStream {
+        private final String jobId;
+
+        // 以下は this で同期
+        private final Map<Integer, CompletableFuture<byte[]>> pages = new HashMap<>();
+        private int started;           // 取り始めたページ数
+        private int consumed;          // 読み終わったページ数
+        private String pendingLocator; // まだ始めていない次ページの locator
+        private int lastPage = -1;     // 最後のページ番号（分かるまで -1）
+        private boolean closed;
+
+        // 読み側（1スレッド）
+        private byte[] cur;
+        private int curPos;
+        private int pageNo = -1;
+        private byte[] firstHeader;
+
+        private PageStream(String jobId) {
+            this.jobId = jobId;
+        }
+
+        private void start() {
+            synchronized (this) {
+                started = 1;
+            }
+            fetch(0, null);
+        }
+
+        /** 読み終わったページ数 */
+        public synchronized int pagesRead() {
+            return consumed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (cur == null || curPos >= cur.length) {
+                if (!nextPage()) return -1;
+            }
+            int n = Math.min(len, cur.length - curPos);
+            System.arraycopy(cur, curPos, b, off, n);
+            curPos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                pendingLocator = null;
+                for (CompletableFuture<byte[]> f : pages.values()) f.cancel(false);
+            }
+        }
+
+        /** 次のページに進む。もう無ければ false */
+        private boolean nextPage() throws IOException {
+            if (pageNo >= 0) {
+                synchronized (this) {
+                    pages.remove(pageNo);
+                    consumed++;
+                }
+                tryStartNext();
+            }
+            pageNo++;
+
+            CompletableFuture<byte[]> f;
+            synchronized (this) {
+                if (closed) throw new IOException("PageStream is closed");
+                if (lastPage >= 0 && pageNo > lastPage) return false;
+                f = page(pageNo);
+            }
+
+            byte[] body;
+            try {
+                body = f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("クエリ結果の待ち中に割り込みが発生しました", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException("クエリ結果の取得に失敗しました jobId=" + jobId + " page=" + pageNo, cause);
+            }
+            if (body == null) return false; // 最後のページの次（終わり）
+
+            cur = body;
+            curPos = 0;
+            int headerEnd = headerEnd(body);
+            if (pageNo == 0) {
+                firstHeader = Arrays.copyOf(body, headerEnd);
+            } else {
+                // 2ページ目以降のヘッダー行は落とす（1ページ目と違えば壊れた結果）
+                if (!Arrays.equals(firstHeader, 0, firstHeader.length, body, 0, headerEnd)) {
+                    throw new IOException("クエリ結果のヘッダーがページ間で違います jobId=" + jobId + " page=" + pageNo);
+                }
+                curPos = headerEnd;
+            }
+            return true;
+        }
+
+        private CompletableFuture<byte[]> page(int no) {
+            return pages.computeIfAbsent(no, k -> new CompletableFuture<>());
+        }
+
+        private void fetch(int no, String locator) {
+            AtomicBoolean headersSeen = new AtomicBoolean();
+            HttpResponse.BodyHandler<byte[]> handler = info -> {
+                // ヘッダーが届いた時点で次ページを始める（本体の受信と重ねる）。再試行で2回目が来ても1回だけ
+                if (info.statusCode() / 100 == 2 && headersSeen.compareAndSet(false, true)) {
+                    onLocator(no, info.headers().firstValue("Sforce-Locator").orElse(NO_MORE_PAGES));
+                }
+                return HttpResponse.BodySubscribers.ofByteArray();
+            };
+
+            api.getQueryResults(jobId, locator, maxRecordsPerPage, handler).whenComplete((resp, err) -> {
+                CompletableFuture<byte[]> f;
+                synchronized (this) {
+                    f = page(no);
+                }
+                if (err != null) {
+                    f.completeExceptionally(err instanceof CompletionException && err.getCause() != null ? err.getCause() : err);
+                } else {
+                    f.complete(resp.body());
+                }
+            });
+        }
+
+        private void onLocator(int no, String locator) {
+            synchronized (this) {
+                if (closed) return;
+                if (locator.isEmpty() || NO_MORE_PAGES.equals(locator)) {
+                    lastPage = no;
+                    page(no + 1).complete(null); // 読み側に「終わり」を知らせる
+                    return;
+                }
+                pendingLocator = locator;
+            }
+            tryStartNext();
+        }
+
+        /** 先行ページ数に空きがあり、次の locator が分かっていれば次ページを始める */
+        private void tryStartNext() {
+            int no;
+            String locator;
+            synchronized (this) {
+                if (closed || pendingLocator == null || started - consumed >= prefetchPages) return;
+                no = started++;
+                locator = pendingLocator;
+                pendingLocator = null;
+            }
+            fetch(no, locator);
+        }
+    }
+
+    /** 先頭行（LF まで。CRLF も可）の長さ */
+    private static int headerEnd(byte[] body) {
+        for (int i = 0; i < body.length; i++) {
+            if (body[i] == '\n') return i + 1;
+        }
+        return body.length;
+    }
+}
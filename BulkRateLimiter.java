@@ -0,0 +1,279 @@
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * org 単位で共有する Bulk API 呼び出しの流量制御。
+ * - トークンバケット：1秒あたりの送信数（ratePerSecond、瞬間的には burst まで）
+ * - AIMD の同時実行数：成功ごとに少しずつ増やし（+1/上限）、429/503 や Retry-After で半分にする
+ * - Retry-After を受けたら、その時刻まで org 全体で新しい送信を止める
+ *   （各スレッド・各ジョブがバラバラに待って同時に再送する「再試行の嵐」を防ぐ）
+ *
+ * 1回の送信ごとに acquire() で Permit を取り、結果に応じて success / throttled / release のどれかを1回呼ぶ。
+ * 待ちは非同期（CompletableFuture）で、空くまで内部のタイマーで起こすのでスレッドは使わない。
+ * 同期で使う場合は acquireBlocking()。
+ *
+ * 使い方：
+ *   BulkRateLimiter limiter = BulkRateLimiter.forOrg(instanceBaseUrl);   // 同じ org なら同じインスタンス
+ *   BulkRateLimiter.Permit p = limiter.acquireBlocking();
+ *   try {
+ *       resp = client.send(...);
+ *   } finally {
+ *       p.onResponse(resp.statusCode(), retryAfterSeconds);             // 例外時は p.release()
+ *   }
+ */
+public final class BulkRateLimiter {
+
+    // 既定値（forOrg で作る時。変える時は register で先に登録する）
+    private static final double DEFAULT_RATE_PER_SECOND = 10.0;
+    private static final int DEFAULT_BURST = 20;
+    private static final int DEFAULT_INITIAL_CONCURRENCY = 8;
+    private static final int DEFAULT_MAX_CONCURRENCY = 32;
+
+    // 連続した 429 で一気に 1 まで落ちないよう、半減は この間隔に1回まで
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Map<String, BulkRateLimiter> BY_ORG = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bulk-rate-limiter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final double ratePerSecond;
+    private final double burst;
+    private final int maxConcurrency;
+
+    // 以下は this で同期
+    private double tokens;
+    private long lastRefillNanos;
+    private double limit;
+    private int inFlight;
+    private long pausedUntilNanos;
+    private long lastDecreaseNanos;
+    private boolean wakeScheduled;
+    private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+
+    private long throttledCount;
+
+    /**
+     * @param ratePerSecond      1秒あたりの送信数
+     * @param burst              瞬間的に送れる数（トークンの上限）
+     * @param initialConcurrency 同時実行数の初期値
+     * @param maxConcurrency     同時実行数の上限（成功が続いてもこれ以上は増やさない）
+     */
+    public BulkRateLimiter(double ratePerSecond, int burst, int initialConcurrency, int maxConcurrency) {
+        if (ratePerSecond <= 0) throw new IllegalArgumentException("ratePerSecond must be > 0");
+        if (burst <= 0) throw new IllegalArgumentException("burst must be > 0");
+        if (initialConcurrency <= 0) throw new IllegalArgumentException("initialConcurrency must be > 0");
+        if (maxConcurrency < initialConcurrency) throw new IllegalArgumentException("maxConcurrency must be >= initialConcurrency");
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.maxConcurrency = maxConcurrency;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.lastDecreaseNanos = lastRefillNanos - DECREASE_COOLDOWN_NANOS;
+        this.limit = initialConcurrency;
+    }
+
+    /** instanceBaseUrl ごとに1つ（無ければ既定値で作る） */
+    public static BulkRateLimiter forOrg(String instanceBaseUrl) {
+        return BY_ORG.computeIfAbsent(orgKey(instanceBaseUrl),
+                k -> new BulkRateLimiter(DEFAULT_RATE_PER_SECOND, DEFAULT_BURST, DEFAULT_INITIAL_CONCURRENCY, DEFAULT_MAX_CONCURRENCY));
+    }
+
+    /** org の上限を既定値以外にする時は、最初の呼び出しより前にここで登録する */
+    public static void register(String instanceBaseUrl, BulkRateLimiter limiter) {
+        BY_ORG.put(orgKey(instanceBaseUrl), limiter);
+    }
+
+    private static String orgKey(String instanceBaseUrl) {
+        String k = instanceBaseUrl.trim().toLowerCase(Locale.ROOT);
+        while (k.endsWith("/")) k = k.substring(0, k.length() - 1);
+        return k;
+    }
+
+    // -------------------------
+    // Public API
+    // -------------------------
+
+    /** 送信してよくなったら完了する。待たせている間はスレッドを使わない */
+    public CompletableFuture<Permit> acquire() {
+        CompletableFuture<Permit> f = new CompletableFuture<>();
+        synchronized (this) {
+            waiters.addLast(f);
+        }
+        dispatch();
+        return f;
+    }
+
+    /** acquire の同期版 */
+    public Permit acquireBlocking() throws InterruptedException {
+        CompletableFuture<Permit> f = acquire();
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            // 取れてしまっていたら返す
+            if (!f.cancel(false)) {
+                f.thenAccept(Permit::release);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** 今の同時実行数の上限（AIMD で動く） */
+    public synchronized int currentLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    /** throttled（429/503 等）を受けた回数 */
+    public synchronized long throttledCount() {
+        return throttledCount;
+    }
+
+    // -------------------------
+    // Permit（1回の送信）
+    // -------------------------
+
+    public final class Permit {
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Permit() {}
+
+        /** 成功（2xx）。同時実行数を少し増やす */
+        public void success() {
+            if (done.compareAndSet(false, true)) finish(false, null);
+        }
+
+        /**
+         * 制限された（429/503 など）。同時実行数を半分にし、retryAfter があればその間 org 全体を止める。
+         *
+         * @param retryAfter Retry-After（無ければ null）
+         */
+        public void throttled(Duration retryAfter) {
+            if (done.compareAndSet(false, true)) finish(true, retryAfter);
+        }
+
+        /** 流量と関係ない結果（4xx、通信エラーなど）。枠を返すだけ */
+        public void release() {
+            if (done.compareAndSet(false, true)) finish(null, null);
+        }
+
+        /** ステータスコードから success / throttled / release を選ぶ */
+        public void onResponse(int statusCode, Long retryAfterSeconds) {
+            if (statusCode / 100 == 2) {
+                success();
+            } else if (statusCode == 429 || statusCode == 503 || retryAfterSeconds != null) {
+                throttled(retryAfterSeconds == null ? null : Duration.ofSeconds(retryAfterSeconds));
+            } else {
+                release();
+            }
+        }
+    }
+
+    // -------------------------
+    // Internals
+    // -------------------------
+
+    /** @param throttled true=制限された / false=成功 / null=どちらでもない */
+    private void finish(Boolean throttled, Duration retryAfter) {
+        synchronized (this) {
+            inFlight--;
+            long now = System.nanoTime();
+            if (Boolean.FALSE.equals(throttled)) {
+                limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+            } else if (Boolean.TRUE.equals(throttled)) {
+                throttledCount++;
+                if (now - lastDecreaseNanos >= DECREASE_COOLDOWN_NANOS) {
+                    limit = Math.max(1.0, limit / 2);
+                    lastDecreaseNanos = now;
+                }
+                // 溜まっていた分を一気に送らないよう、バケツを空にする
+                refill(now);
+                tokens = Math.min(tokens, 0);
+                if (retryAfter != null && !retryAfter.isNegative()) {
+                    long until = now + retryAfter.toNanos();
+                    if (until - pausedUntilNanos > 0) pausedUntilNanos = until;
+                }
+            }
+        }
+        dispatch();
+    }
+
+    /** 送れるだけ待ち行列から送り出す。待ちが残ればタイマーで起こす */
+    private void dispatch() {
+        List<CompletableFuture<Permit>> ready = new ArrayList<>();
+        synchronized (this) {
+            while (!waiters.isEmpty()) {
+                CompletableFuture<Permit> head = waiters.peekFirst();
+                if (head.isDone()) { // キャンセル済み
+                    waiters.pollFirst();
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                if (pausedUntilNanos - now > 0) {
+                    scheduleWake(pausedUntilNanos - now);
+                    break;
+                }
+                if (inFlight >= (int) limit) {
+                    break; // 誰かが finish したら dispatch される
+                }
+                refill(now);
+                if (tokens < 1.0) {
+                    long waitNanos = (long) Math.ceil((1.0 - tokens) / ratePerSecond * 1_000_000_000L);
+                    scheduleWake(waitNanos);
+                    break;
+                }
+
+                tokens -= 1.0;
+                inFlight++;
+                ready.add(waiters.pollFirst());
+            }
+        }
+
+        // 完了処理（呼び出し側のコールバック）はロックの外で
+        for (CompletableFuture<Permit> f : ready) {
+            Permit p = new Permit();
+            if (!f.complete(p)) {
+                p.release(); // 直前にキャンセルされた
+            }
+        }
+    }
+
+    private void refill(long now) {
+        double elapsedSec = (now - lastRefillNanos) / 1_000_000_000.0;
+        if (elapsedSec > 0) {
+            tokens = Math.min(burst, tokens + elapsedSec * ratePerSecond);
+            lastRefillNanos = now;
+        }
+    }
+
+    private void scheduleWake(long delayNanos) {
+        if (wakeScheduled) return;
+        wakeScheduled = true;
+        TIMER.schedule(() -> {
+            synchronized (this) {
+                wakeScheduled = false;
+            }
+            dispatch();
+        }, Math.max(delayNanos, 1_000_000L), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,73 @@
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * リジェクト行をCSVに書き出す RejectSink。
+ * 列 = 行の列（toColumns）＋ error_sql_state ＋ error_message
+ *
+ * 使い方（成功CSV更新の行 = [sfId, key]）：
+ *   try (CsvRejectSink<String[]> sink = CsvRejectSink.open(Paths.get("rejects.csv"), StandardCharsets.UTF_8,
+ *           Arrays.asList("sf__Id", "ExternalId__c"), row -> Arrays.asList(row))) { ... }
+ *
+ * スレッドセーフ（reject は synchronized）。
+ */
+public final class CsvRejectSink<R> implements RejectSink<R>, Closeable {
+
+    private final Writer writer;
+    private final CsvToolkit.CsvWriter csv;
+    private final Function<? super R, List<String>> toColumns;
+    private long count;
+
+    private CsvRejectSink(Writer writer, Function<? super R, List<String>> toColumns) {
+        this.writer = writer;
+        this.csv = new CsvToolkit.CsvWriter(writer);
+        this.toColumns = toColumns;
+    }
+
+    public static <R> CsvRejectSink<R> open(
+            Path file,
+            Charset charset,
+            List<String> header,
+            Function<? super R, List<String>> toColumns
+    ) throws IOException {
+
+        Objects.requireNonNull(file, "file");
+        Objects.requireNonNull(charset, "charset");
+        Objects.requireNonNull(header, "header");
+        Objects.requireNonNull(toColumns, "toColumns");
+
+        Writer w = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), charset), 1 << 16);
+        CsvRejectSink<R> sink = new CsvRejectSink<>(w, toColumns);
+
+        List<String> h = new ArrayList<>(header);
+        h.add("error_sql_state");
+        h.add("error_message");
+        sink.csv.writeRecord(h);
+        return sink;
+    }
+
+    @Override
+    public synchronized void reject(R row, Exception cause) throws IOException {
+        List<String> cols = new ArrayList<>(toColumns.apply(row));
+        cols.add(cause instanceof SQLException ? ((SQLException) cause).getSQLState() : "");
+        cols.add(String.valueOf(cause.getMessage()));
+        csv.writeRecord(cols);
+        count++;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,299 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 複数オブジェクトのCSV同期ジョブを共有プールで並列実行するスケジューラ。
+ * - ジョブは推定サイズの大きい順に投入する（長いジョブを先に始めて全体の処理時間を縮める）
+ * - DB接続の同時使用数は全ジョブ合計で maxDbConnections まで（insert用プールのスレッド数で制限）
+ * - ジョブごとの同時insert数は SyncJob.maxConnections まで
+ *
+ * 使い方：
+ *   try (CsvSyncScheduler scheduler = new CsvSyncScheduler(4, 8)) {
+ *       List<CsvSyncScheduler.JobReport> reports = scheduler.runAll(jobs);
+ *   }
+ */
+public class CsvSyncScheduler implements AutoCloseable {
+
+    private final ExecutorService jobPool;
+    private final ExecutorService insertPool;
+
+    /**
+     * @param jobParallelism   同時に走らせるジョブ数（CSV読み込み＋DTO変換のスレッド数）
+     * @param maxDbConnections 全ジョブ合計のDB接続上限（同時に実行される insert の数）
+     */
+    public CsvSyncScheduler(int jobParallelism, int maxDbConnections) {
+        if (jobParallelism <= 0) throw new IllegalArgumentException("jobParallelism must be > 0");
+        if (maxDbConnections <= 0) throw new IllegalArgumentException("maxDbConnections must be > 0");
+
+        this.jobPool = Executors.newFixedThreadPool(jobParallelism);
+        this.insertPool = Executors.newFixedThreadPool(maxDbConnections);
+    }
+
+    /**
+     * 全ジョブを実行し、全て終わるまで待つ。
+     * 1ジョブが失敗しても他のジョブは止めない（結果は JobReport で返す）。
+     *
+     * @return 引数 jobs と同じ順のレポート
+     */
+    public List<JobReport> runAll(List<SyncJob<?>> jobs) throws InterruptedException {
+        Objects.requireNonNull(jobs, "jobs");
+
+        // 推定サイズの大きい順に投入（プールはFIFOなので、この順に着手される）
+        List<SyncJob<?>> ordered = new ArrayList<>(jobs);
+        ordered.sort(Comparator.comparingLong((SyncJob<?> j) -> j.source.estimatedSize()).reversed());
+
+        Map<SyncJob<?>, Future<JobReport>> futures = new IdentityHashMap<>();
+        for (SyncJob<?> job : ordered) {
+            futures.put(job, jobPool.submit(() -> runJob(job)));
+        }
+
+        List<JobReport> reports = new ArrayList<>(jobs.size());
+        for (SyncJob<?> job : jobs) {
+            try {
+                reports.add(futures.get(job).get());
+            } catch (ExecutionException e) {
+                // runJob は例外を JobReport に詰めるので通常ここには来ない
+                reports.add(new JobReport(job.name, 0, 0, e.getCause()));
+            }
+        }
+        return reports;
+    }
+
+    private <T> JobReport runJob(SyncJob<T> job) {
+        long start = System.nanoTime();
+        BudgetedRepository<T> repository = new BudgetedRepository<>(job.repository, insertPool, job.maxConnections);
+
+        try {
+            Properties mapping = loadMapping(job.mappingResource);
+
+            AbstractCsvDtoAssembler<T> assembler =
+                    new AbstractCsvDtoAssembler<T>(mapping, job.dtoClass, job.programValues) {};
+            AbstractCsvSyncExecutor<T> executor =
+                    new AbstractCsvSyncExecutor<T>(repository, assembler) {};
+
+            try (InputStream in = job.source.open()) {
+                executor.execute(in);
+            }
+            repository.awaitAll();
+
+            return new JobReport(job.name, repository.rowsInserted(), elapsedMillis(start), null);
+
+        } catch (Throwable e) {
+            try {
+                repository.awaitAll();
+            } catch (Throwable ignore) {
+                // 最初の例外を優先
+            }
+            return new JobReport(job.name, repository.rowsInserted(), elapsedMillis(start), e);
+        }
+    }
+
+    private static Properties loadMapping(String resource) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = CsvSyncScheduler.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException(resource + " が見つかりません");
+            }
+            props.load(in);
+        }
+        return props;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    @Override
+    public void close() {
+        jobPool.shutdown();
+        insertPool.shutdown();
+    }
+
+    // -------------------------
+    // Job definition
+    // -------------------------
+
+    /** CSVの取得元。estimatedSize はジョブの並び替えにだけ使う（バイト数など、大小が比較できればよい）。 */
+    public interface CsvSource {
+        InputStream open() throws IOException;
+
+        long estimatedSize();
+
+        static CsvSource ofFile(File file) {
+            Objects.requireNonNull(file, "file");
+            return new CsvSource() {
+                @Override
+                public InputStream open() throws IOException {
+                    return new FileInputStream(file);
+                }
+
+                @Override
+                public long estimatedSize() {
+                    return file.length();
+                }
+            };
+        }
+    }
+
+    public static final class SyncJob<T> {
+        final String name;
+        final CsvSource source;
+        final String mappingResource;
+        final Class<T> dtoClass;
+        final BulkInsertRepository<T> repository;
+        final Map<String, Object> programValues;
+        final int maxConnections;
+
+        /**
+         * @param name            ログ・レポート用の名前（例: "RetailStore"）
+         * @param source          CSVの取得元
+         * @param mappingResource クラスパス上のマッピング（例: "/retailstore-sf-mapping.properties"）
+         * @param dtoClass        DTOクラス
+         * @param repository      insert先
+         * @param programValues   プログラム側で埋める値（null可）
+         * @param maxConnections  このジョブが同時に使うDB接続数の上限
+         */
+        public SyncJob(
+                String name,
+                CsvSource source,
+                String mappingResource,
+                Class<T> dtoClass,
+                BulkInsertRepository<T> repository,
+                Map<String, Object> programValues,
+                int maxConnections) {
+            if (maxConnections <= 0) throw new IllegalArgumentException("maxConnections must be > 0");
+
+            this.name = Objects.requireNonNull(name, "name");
+            this.source = Objects.requireNonNull(source, "source");
+            this.mappingResource = Objects.requireNonNull(mappingResource, "mappingResource");
+            this.dtoClass = Objects.requireNonNull(dtoClass, "dtoClass");
+            this.repository = Objects.requireNonNull(repository, "repository");
+            this.programValues = programValues;
+            this.maxConnections = maxConnections;
+        }
+
+        public SyncJob(
+                String name,
+                CsvSource source,
+                String mappingResource,
+                Class<T> dtoClass,
+                BulkInsertRepository<T> repository) {
+            this(name, source, mappingResource, dtoClass, repository, null, 1);
+        }
+    }
+
+    public static final class JobReport {
+        public final String name;
+        public final long rowsInserted;
+        public final long elapsedMillis;
+        public final Throwable error;
+
+        JobReport(String name, long rowsInserted, long elapsedMillis, Throwable error) {
+            this.name = name;
+            this.rowsInserted = rowsInserted;
+            this.elapsedMillis = elapsedMillis;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return "JobReport{name=" + name +
+                    ", rowsInserted=" + rowsInserted +
+                    ", elapsedMillis=" + elapsedMillis +
+                    ", error=" + (error == null ? "none" : error.toString()) + "}";
+        }
+    }
+
+    // -------------------------
+    // Internals: connection budget
+    // -------------------------
+
+    /**
+     * insert を共有 insertPool に投げる BulkInsertRepository。
+     * - ジョブ単位の上限は Semaphore（上限に達したら読み込み側スレッドが待つ＝背圧）
+     * - 全体の上限は insertPool のスレッド数
+     * - 1回でも insert が失敗したら、以降の insert 呼び出しでその例外を投げて読み込みを止める
+     */
+    private static final class BudgetedRepository<T> implements BulkInsertRepository<T> {
+        private final BulkInsertRepository<T> delegate;
+        private final ExecutorService insertPool;
+        private final Semaphore permits;
+        private final int maxConnections;
+        private final AtomicLong rowsInserted = new AtomicLong();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        BudgetedRepository(BulkInsertRepository<T> delegate, ExecutorService insertPool, int maxConnections) {
+            this.delegate = delegate;
+            this.insertPool = insertPool;
+            this.permits = new Semaphore(maxConnections);
+            this.maxConnections = maxConnections;
+        }
+
+        @Override
+        public void insert(List<T> list) {
+            throwIfFailed();
+
+            // 呼び出し側がバッファを使い回しても壊れないようにコピーして渡す
+            List<T> chunk = new ArrayList<>(list);
+
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("insert待ちで割り込みが発生しました", e);
+            }
+
+            insertPool.execute(() -> {
+                try {
+                    if (failure.get() == null) {
+                        delegate.insert(chunk);
+                        rowsInserted.addAndGet(chunk.size());
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        /** 投入済みの insert が全て終わるまで待ち、失敗があれば投げる */
+        void awaitAll() throws InterruptedException {
+            permits.acquire(maxConnections);
+            permits.release(maxConnections);
+            throwIfFailed();
+        }
+
+        long rowsInserted() {
+            return rowsInserted.get();
+        }
+
+        private void throwIfFailed() {
+            Throwable e = failure.get();
+            if (e == null) return;
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            if (e instanceof Error) throw (Error) e;
+            throw new RuntimeException("insertに失敗しました", e);
+        }
+    }
+}
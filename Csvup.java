@@ -3,6 +3,9 @@ import java.net.URI;
 import java.net.http.*;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -27,13 +30,47 @@ public class BulkV2Uploader {
             Path csvPath,
             int maxAttempts           // 例: 8
     ) throws IOException, InterruptedException {
+        return upload(instanceBaseUrl, apiVersion, accessToken, jobId,
+                () -> HttpRequest.BodyPublishers.ofFile(csvPath), maxAttempts);
+    }
+
+    /**
+     * ファイルを経由しない版。ReplayableBodyBuffer（メモリ or 一時ファイル）から送る。
+     * リトライ時はバッファを先頭から読み直して同じ内容を再送する。
+     *
+     * @param body 書き込み済み（close 済み）のバッファ。discard は呼び出し側で行う
+     */
+    public HttpResponse<String> uploadCsvWithRetry(
+            String instanceBaseUrl,
+            String apiVersion,
+            String accessToken,
+            String jobId,
+            ReplayableBodyBuffer body,
+            int maxAttempts
+    ) throws IOException, InterruptedException {
+        return upload(instanceBaseUrl, apiVersion, accessToken, jobId, body::bodyPublisher, maxAttempts);
+    }
+
+    /** 試行ごとに送信本体を作り直すためのもの */
+    private interface BodySource {
+        HttpRequest.BodyPublisher open() throws IOException;
+    }
+
+    private HttpResponse<String> upload(
+            String instanceBaseUrl,
+            String apiVersion,
+            String accessToken,
+            String jobId,
+            BodySource body,
+            int maxAttempts
+    ) throws IOException, InterruptedException {
 
         String url = instanceBaseUrl
                 + "/services/data/" + apiVersion
                 + "/jobs/ingest/" + jobId
                 + "/batches";
 
-        // ファイル送信は再試行しても同じ内容が送れるので、毎回 newBuilder で作る
+        // 送信本体は再試行しても同じ内容が送れるので、毎回 newBuilder で作る
         for (int attempt = 1; attempt <= maxAttempts; attempt++) {
 
             HttpRequest request = HttpRequest.newBuilder()
@@ -42,20 +79,28 @@ public class BulkV2Uploader {
                     .header("Authorization", "Bearer " + accessToken)
                     .header("Content-Type", "text/csv; charset=UTF-8")
                     .header("Accept", "application/json")
-                    .PUT(HttpRequest.BodyPublishers.ofFile(csvPath))
+                    .PUT(body.open())
                     .build();
 
+            // 同じ org への呼び出しは全部 BulkRateLimiter を通す（429 を受けたら org 全体で待つ）
+            BulkRateLimiter.Permit permit = BulkRateLimiter.forOrg(instanceBaseUrl).acquireBlocking();
             HttpResponse<String> resp;
             try {
                 resp = client.send(request, HttpResponse.BodyHandlers.ofString());
             } catch (HttpTimeoutException e) {
+                permit.release();
                 // タイムアウトも一時障害扱いでリトライ対象にする
                 if (attempt == maxAttempts) throw e;
                 sleepBackoff(null, attempt);
                 continue;
+            } catch (IOException | RuntimeException | InterruptedException e) {
+                permit.release();
+                throw e;
             }
 
             int code = resp.statusCode();
+            Long retryAfterSeconds = parseRetryAfterSeconds(resp);
+            permit.onResponse(code, retryAfterSeconds);
             if (code / 100 == 2) {
                 return resp; // 成功
             }
@@ -65,8 +110,7 @@ public class BulkV2Uploader {
                 throw new IOException("CSV upload failed. status=" + code + " body=" + truncate(resp.body(), 2000));
             }
 
-            // Retry-After があれば最優先（秒 or HTTP-date だが、SF/ゲートウェイ系は秒が多い）
-            Long retryAfterSeconds = parseRetryAfterSeconds(resp);
+            // Retry-After があれば最優先（秒 or HTTP-date）
             sleepBackoff(retryAfterSeconds, attempt);
         }
 
@@ -74,18 +118,24 @@ public class BulkV2Uploader {
         throw new IOException("CSV upload failed: exhausted retries");
     }
 
-    private static boolean isRetryable(int code) {
+    static boolean isRetryable(int code) {
         return code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
     }
 
-    private static Long parseRetryAfterSeconds(HttpResponse<?> resp) {
+    static Long parseRetryAfterSeconds(HttpResponse<?> resp) {
         Optional<String> ra = resp.headers().firstValue("Retry-After");
         if (ra.isEmpty()) return null;
         String v = ra.get().trim();
-        // 基本「秒」だけ対応（HTTP-dateは必要になったら追加）
         try {
-            return Long.parseLong(v);
+            return Math.max(0L, Long.parseLong(v));
         } catch (NumberFormatException ignore) {
+            // 秒でなければ HTTP-date（例: Wed, 21 Oct 2015 07:28:00 GMT）
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME);
+            long ms = Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis();
+            return Math.max(0L, (ms + 999) / 1000); // 切り上げ。過去の日時なら 0
+        } catch (DateTimeParseException ignore) {
             return null;
         }
     }
@@ -96,21 +146,24 @@ public class BulkV2Uploader {
      * - else: exponential backoff (base 1s) capped at 30s + jitter
      */
     private static void sleepBackoff(Long retryAfterSeconds, int attempt) throws InterruptedException {
+        Thread.sleep(backoffMillis(retryAfterSeconds, attempt));
+    }
+
+    /** sleepBackoff の待ち時間（ミリ秒）。タイマーで再試行する側（BulkApiAsyncClient）と共有 */
+    static long backoffMillis(Long retryAfterSeconds, int attempt) {
         long jitterMs = ThreadLocalRandom.current().nextLong(0, 350); // 0..349ms
 
         if (retryAfterSeconds != null) {
-            long ms = retryAfterSeconds * 1000L + jitterMs;
-            Thread.sleep(ms);
-            return;
+            return retryAfterSeconds * 1000L + jitterMs;
         }
 
         // attempt=1 => 1s, 2 => 2s, 3 => 4s, 4 => 8s ...
         long baseMs = 1000L * (1L << Math.min(attempt - 1, 5)); // 1,2,4,8,16,32
         long cappedMs = Math.min(baseMs, 30_000L);
-        Thread.sleep(cappedMs + jitterMs);
+        return cappedMs + jitterMs;
     }
 
-    private static String truncate(String s, int max) {
+    static String truncate(String s, int max) {
         if (s == null) return "";
         if (s.length() <= max) return s;
         return s.substring(0, max) + "...(truncated)";
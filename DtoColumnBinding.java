@@ -0,0 +1,114 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * DBカラム ⇔ DTOフィールド の対応を最初に1回だけ解決しておき、
+ * PreparedStatement へのバインドを行う。
+ * - カラム順は LinkedHashMap の順（＝SQLのカラム順）
+ * - null は setNull(型つき) でバインド（Oracleで setObject(null) が型エラーになる対策）
+ */
+public final class DtoColumnBinding<T> {
+
+    private final List<String> columns;
+    private final Field[] fields;
+    private final int[] sqlTypes;
+
+    private DtoColumnBinding(List<String> columns, Field[] fields, int[] sqlTypes) {
+        this.columns = columns;
+        this.fields = fields;
+        this.sqlTypes = sqlTypes;
+    }
+
+    /**
+     * @param dtoClass        DTOクラス（親クラスのフィールドも対象）
+     * @param columnToDtoField DBカラム名 -> DTOフィールド名（★順序が大事なのでLinkedHashMap）
+     */
+    public static <T> DtoColumnBinding<T> of(Class<T> dtoClass, LinkedHashMap<String, String> columnToDtoField) {
+        Objects.requireNonNull(dtoClass, "dtoClass");
+        Objects.requireNonNull(columnToDtoField, "columnToDtoField");
+        if (columnToDtoField.isEmpty()) throw new IllegalArgumentException("columnToDtoField is empty");
+
+        Map<String, Field> dtoFields = new HashMap<>();
+        for (Class<?> c = dtoClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers())) continue;
+                f.setAccessible(true);
+                dtoFields.putIfAbsent(f.getName(), f);
+            }
+        }
+
+        List<String> columns = new ArrayList<>(columnToDtoField.size());
+        Field[] fields = new Field[columnToDtoField.size()];
+        int[] sqlTypes = new int[columnToDtoField.size()];
+
+        int i = 0;
+        for (Map.Entry<String, String> e : columnToDtoField.entrySet()) {
+            Field f = dtoFields.get(e.getValue());
+            if (f == null) {
+                throw new IllegalArgumentException("DTOにフィールドが無い: " + e.getValue() + " (DB列 " + e.getKey() + ")");
+            }
+            columns.add(e.getKey());
+            fields[i] = f;
+            sqlTypes[i] = sqlTypeOf(f.getType());
+            i++;
+        }
+
+        return new DtoColumnBinding<>(Collections.unmodifiableList(columns), fields, sqlTypes);
+    }
+
+    public List<String> columns() {
+        return columns;
+    }
+
+    public int columnCount() {
+        return fields.length;
+    }
+
+    /** カラム順の値（DTO1件分） */
+    public Object value(T dto, int columnIndex) {
+        try {
+            return fields[columnIndex].get(dto);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * dto の値を parameterOffset+1 番目のプレースホルダから順にバインドする。
+     *
+     * @return 次に使うプレースホルダの直前の位置（= parameterOffset + columnCount）
+     */
+    public int bind(PreparedStatement ps, int parameterOffset, T dto) throws SQLException {
+        for (int i = 0; i < fields.length; i++) {
+            Object v = value(dto, i);
+            if (v == null) {
+                ps.setNull(parameterOffset + i + 1, sqlTypes[i]);
+            } else {
+                ps.setObject(parameterOffset + i + 1, v);
+            }
+        }
+        return parameterOffset + fields.length;
+    }
+
+    private static int sqlTypeOf(Class<?> type) {
+        if (type == String.class) return Types.VARCHAR;
+        if (type == Integer.class || type == int.class) return Types.INTEGER;
+        if (type == Long.class || type == long.class) return Types.BIGINT;
+        if (type == BigDecimal.class) return Types.NUMERIC;
+        if (type == Boolean.class || type == boolean.class) return Types.BOOLEAN;
+        if (type == Timestamp.class) return Types.TIMESTAMP;
+        return Types.VARCHAR;
+    }
+}
@@ -0,0 +1,310 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReflectiveCsvWriter / MappedCsvWriter と同じ出力を、行ごとの Stream / String 連結なしで書くCSVライタ。
+ * - 列の取り出しは作成時に MethodHandle に解決済み（行ごとの Field.get なし）
+ * - int/long などのプリミティブ列は箱詰めせずに数字を直接書く（クォート判定もしない）
+ * - 値はエスケープしながら使い回しの char[] に直接追記し、64K文字たまったら Writer へまとめて書く
+ *
+ * 出力形式は既存のライタと同じ：
+ * - 列順：forClass = フィールド名の昇順（static除く）、fromSfToDtoFieldMap = Map の順
+ * - null は空文字、, " CR LF を含む値は "..." で囲い " は "" に
+ * - 改行は println と同じ System.lineSeparator()
+ *
+ * FastCsvWriter 自体はスレッドセーフ（使い回し可）。書き込みは open() で作る Out ごと（Out はスレッドセーフではない）。
+ *
+ * 使い方：
+ *   FastCsvWriter<MyDto> csv = FastCsvWriter.forClass(MyDto.class);
+ *   try (FastCsvWriter.Out<MyDto> out = csv.open(writer)) {
+ *       out.writeHeader();
+ *       for (MyDto d : cursor) out.writeRow(d);
+ *   }
+ */
+public final class FastCsvWriter<T> {
+
+    private static final int FLUSH_CHARS = 1 << 16;
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+    private final String[] headers;
+    private final Column[] columns;
+
+    private FastCsvWriter(List<String> headers, List<Field> fields) {
+        this.headers = headers.toArray(new String[0]);
+        this.columns = new Column[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            columns[i] = Column.of(fields.get(i));
+        }
+    }
+
+    /** ReflectiveCsvWriter.forClass と同じ列（static以外の宣言フィールドを名前順） */
+    public static <T> FastCsvWriter<T> forClass(Class<T> clazz) {
+        List<Field> fields = new ArrayList<>();
+        for (Field f : clazz.getDeclaredFields()) {
+            if (!Modifier.isStatic(f.getModifiers())) fields.add(f);
+        }
+        // ★順序固定：ReflectiveCsvWriter と同じ
+        fields.sort(Comparator.comparing(Field::getName));
+
+        List<String> headers = new ArrayList<>(fields.size());
+        for (Field f : fields) headers.add(f.getName());
+        return new FastCsvWriter<>(headers, fields);
+    }
+
+    /** MappedCsvWriter.fromSfToDtoFieldMap と同じ列（Map の順。キー = ヘッダー、値 = DTOフィールド名） */
+    public static <T> FastCsvWriter<T> fromSfToDtoFieldMap(Class<T> clazz, LinkedHashMap<String, String> sfToDtoField) {
+        List<String> headers = new ArrayList<>(sfToDtoField.size());
+        List<Field> fields = new ArrayList<>(sfToDtoField.size());
+        for (Map.Entry<String, String> e : sfToDtoField.entrySet()) {
+            try {
+                fields.add(clazz.getDeclaredField(e.getValue()));
+                headers.add(e.getKey());
+            } catch (NoSuchFieldException ex) {
+                throw new IllegalArgumentException("DTOにフィールドが無い: " + e.getValue() + " (SF列 " + e.getKey() + ")", ex);
+            }
+        }
+        return new FastCsvWriter<>(headers, fields);
+    }
+
+    public List<String> headers() {
+        return Arrays.asList(headers.clone());
+    }
+
+    public Out<T> open(Writer w) {
+        return new Out<>(this, w);
+    }
+
+    /** ヘッダー付きでUTF-8ファイルに全件書く */
+    public void writeUtf8(Path file, Iterable<? extends T> rows) throws IOException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), FLUSH_CHARS);
+             Out<T> out = open(w)) {
+            out.writeHeader();
+            for (T dto : rows) {
+                out.writeRow(dto);
+            }
+        }
+    }
+
+    // -------------------------
+    // Out（書き込み先ごとのバッファ）
+    // -------------------------
+
+    public static final class Out<T> implements AutoCloseable {
+        private final FastCsvWriter<T> plan;
+        private final Writer w;
+        private char[] buf = new char[FLUSH_CHARS + 1024];
+        private int len;
+
+        private Out(FastCsvWriter<T> plan, Writer w) {
+            this.plan = plan;
+            this.w = w;
+        }
+
+        /** ヘッダー行（既存のライタと同じくエスケープしない） */
+        public void writeHeader() throws IOException {
+            String[] h = plan.headers;
+            for (int i = 0; i < h.length; i++) {
+                if (i > 0) append(',');
+                appendRaw(h[i]);
+            }
+            endLine();
+        }
+
+        public void writeRow(T dto) throws IOException {
+            Column[] cols = plan.columns;
+            for (int i = 0; i < cols.length; i++) {
+                if (i > 0) append(',');
+                try {
+                    cols[i].write(dto, this);
+                } catch (IOException | RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new RuntimeException(t);
+                }
+            }
+            endLine();
+        }
+
+        /** バッファを Writer に書き出して flush する */
+        public void flush() throws IOException {
+            drain();
+            w.flush();
+        }
+
+        /** バッファを書き出して flush する（Writer 自体は閉じない） */
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        private void endLine() throws IOException {
+            for (char c : LINE_SEPARATOR) append(c);
+            if (len >= FLUSH_CHARS) drain();
+        }
+
+        private void drain() throws IOException {
+            if (len > 0) {
+                w.write(buf, 0, len);
+                len = 0;
+            }
+        }
+
+        private void ensure(int n) {
+            if (len + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+            }
+        }
+
+        void append(char c) {
+            ensure(1);
+            buf[len++] = c;
+        }
+
+        void appendRaw(String s) {
+            int n = s.length();
+            ensure(n);
+            s.getChars(0, n, buf, len);
+            len += n;
+        }
+
+        /** , " CR LF を含む時だけ "..." で囲み、" は "" にする */
+        void appendEscaped(String s) {
+            int n = s.length();
+            boolean quote = false;
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    quote = true;
+                    break;
+                }
+            }
+            if (!quote) {
+                appendRaw(s);
+                return;
+            }
+
+            ensure(n * 2 + 2);
+            buf[len++] = '"';
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c == '"') buf[len++] = '"';
+                buf[len++] = c;
+            }
+            buf[len++] = '"';
+        }
+
+        /** Long.toString と同じ表記（文字列を作らない） */
+        void appendLong(long v) {
+            if (v == Long.MIN_VALUE) {
+                appendRaw("-9223372036854775808");
+                return;
+            }
+            ensure(20);
+            if (v < 0) {
+                buf[len++] = '-';
+                v = -v;
+            }
+            int start = len;
+            do {
+                buf[len++] = (char) ('0' + (v % 10));
+                v /= 10;
+            } while (v != 0);
+            // 逆順に入っているのでひっくり返す
+            for (int i = start, j = len - 1; i < j; i++, j--) {
+                char c = buf[i];
+                buf[i] = buf[j];
+                buf[j] = c;
+            }
+        }
+    }
+
+    // -------------------------
+    // 列（作成時に型ごとの書き方を決める）
+    // -------------------------
+
+    private abstract static class Column {
+        final MethodHandle getter;
+
+        Column(MethodHandle getter) {
+            this.getter = getter;
+        }
+
+        abstract void write(Object dto, Out<?> out) throws Throwable;
+
+        static Column of(Field f) {
+            f.setAccessible(true);
+            MethodHandle mh;
+            try {
+                mh = MethodHandles.lookup().unreflectGetter(f);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("フィールドを読めません: " + f, e);
+            }
+
+            Class<?> t = f.getType();
+            if (t == int.class || t == long.class || t == short.class || t == byte.class) {
+                MethodHandle g = mh.asType(MethodType.methodType(long.class, Object.class));
+                return new Column(g) {
+                    @Override
+                    void write(Object dto, Out<?> out) throws Throwable {
+                        out.appendLong((long) getter.invokeExact(dto));
+                    }
+                };
+            }
+            if (t == boolean.class) {
+                MethodHandle g = mh.asType(MethodType.methodType(boolean.class, Object.class));
+                return new Column(g) {
+                    @Override
+                    void write(Object dto, Out<?> out) throws Throwable {
+                        out.appendRaw((boolean) getter.invokeExact(dto) ? "true" : "false");
+                    }
+                };
+            }
+            if (t == double.class || t == float.class) {
+                // Double/Float.toString は , " CR LF を含まないのでクォート判定しない
+                MethodHandle g = mh.asType(MethodType.methodType(Object.class, Object.class));
+                return new Column(g) {
+                    @Override
+                    void write(Object dto, Out<?> out) throws Throwable {
+                        out.appendRaw(String.valueOf((Object) getter.invokeExact(dto)));
+                    }
+                };
+            }
+            if (t == Integer.class || t == Long.class || t == Short.class || t == Byte.class) {
+                MethodHandle g = mh.asType(MethodType.methodType(Object.class, Object.class));
+                return new Column(g) {
+                    @Override
+                    void write(Object dto, Out<?> out) throws Throwable {
+                        Object v = (Object) getter.invokeExact(dto);
+                        if (v != null) out.appendLong(((Number) v).longValue());
+                    }
+                };
+            }
+
+            // String / char / その他オブジェクト：String.valueOf してエスケープ
+            MethodHandle g = mh.asType(MethodType.methodType(Object.class, Object.class));
+            return new Column(g) {
+                @Override
+                void write(Object dto, Out<?> out) throws Throwable {
+                    Object v = (Object) getter.invokeExact(dto);
+                    if (v != null) out.appendEscaped(v instanceof String ? (String) v : String.valueOf(v));
+                }
+            };
+        }
+    }
+}
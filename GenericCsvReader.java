@@ -23,24 +23,13 @@ public class GenericCsvReader {
         }
 
         try (BufferedReader br = new BufferedReader(reader)) {
-            String headerLine = br.readLine();
+            List<String> headers = readHeaders(br, headerValidator);
 
-            // ファイル自体が空
-            if (headerLine == null) {
+            // ファイル自体が空 / ヘッダ行が空文字
+            if (headers == null) {
                 return result;
             }
 
-            // ヘッダ行が空文字
-            if (headerLine.trim().isEmpty()) {
-                return result;
-            }
-
-            List<String> headers = parseCsvLine(headerLine);
-
-            if (headerValidator != null) {
-                headerValidator.validate(headers);
-            }
-
             String line;
             while ((line = br.readLine()) != null) {
                 if (line.trim().isEmpty()) {
@@ -85,6 +74,96 @@ public class GenericCsvReader {
         return dtoList.size();
     }
 
+    public <T> int readAndProcess(Reader reader,
+                                  CsvRowFilter filter,
+                                  CsvRowMapper<T> mapper,
+                                  DtoListProcessor<T> processor,
+                                  int chunkSize) throws Exception {
+        return readAndProcess(reader, filter, mapper, null, processor, chunkSize);
+    }
+
+    /**
+     * chunkSize 件ごとに processor.process を呼ぶストリーミング版。
+     * - 全件をListに溜めないので、ヒープ使用量はファイルサイズではなく chunkSize で決まる
+     * - チャンク用のListは使い回す（process から戻った後に clear する）
+     *   → processor 側で受け取ったListを保持しないこと（必要ならコピーする）
+     *
+     * @return processor に渡した件数の合計（read() 版と同じ件数）
+     */
+    public <T> int readAndProcess(Reader reader,
+                                  CsvRowFilter filter,
+                                  CsvRowMapper<T> mapper,
+                                  CsvHeaderValidator headerValidator,
+                                  DtoListProcessor<T> processor,
+                                  int chunkSize) throws Exception {
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be > 0");
+
+        if (reader == null) {
+            return 0;
+        }
+
+        int total = 0;
+
+        try (BufferedReader br = new BufferedReader(reader)) {
+            List<String> headers = readHeaders(br, headerValidator);
+            if (headers == null) {
+                return 0;
+            }
+
+            List<T> chunk = new ArrayList<>(chunkSize);
+
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                List<String> values = parseCsvLine(line);
+                Map<String, String> rowMap = toRowMap(headers, values);
+
+                if (filter == null || filter.test(rowMap)) {
+                    T dto = mapper.map(rowMap);
+                    if (dto != null) {
+                        chunk.add(dto);
+                    }
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    processor.process(chunk);
+                    total += chunk.size();
+                    chunk.clear();
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                processor.process(chunk);
+                total += chunk.size();
+                chunk.clear();
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * ヘッダ行を読んで検証する。
+     * ファイル自体が空、またはヘッダ行が空文字なら null。
+     */
+    private List<String> readHeaders(BufferedReader br, CsvHeaderValidator headerValidator) throws IOException {
+        String headerLine = br.readLine();
+
+        if (headerLine == null || headerLine.trim().isEmpty()) {
+            return null;
+        }
+
+        List<String> headers = parseCsvLine(headerLine);
+
+        if (headerValidator != null) {
+            headerValidator.validate(headers);
+        }
+        return headers;
+    }
+
     private Map<String, String> toRowMap(List<String> headers, List<String> values) {
         Map<String, String> rowMap = new LinkedHashMap<>();
         for (int i = 0; i < headers.size(); i++) {
@@ -0,0 +1,211 @@
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MyBatis の foreach に頼らず、JDBCで直接まとめてinsertする BulkInsertRepository。
+ * テーブルごとに insert 方式（Strategy）を選べる。
+ *
+ * - JDBC_BATCH       : 1行INSERTを addBatch / executeBatch（どのDBでも動く）
+ * - MULTI_ROW_VALUES : INSERT ... VALUES (...),(...) を、バインド変数の上限内に収まる行数ずつ
+ * - INSERT_ALL       : Oracle の INSERT ALL INTO ... SELECT 1 FROM DUAL
+ *
+ * insert(list) 1回 = 1トランザクション（成功で commit / 失敗で rollback）。
+ *
+ * 使い方：
+ *   BulkInsertRepository<RetailStoreDto> repo = new JdbcBulkInsertRepository<>(
+ *       ds, "RETAIL_STORE", DtoColumnBinding.of(RetailStoreDto.class, columns),
+ *       JdbcBulkInsertRepository.strategyFor(props, "RETAIL_STORE", Strategy.JDBC_BATCH), 30_000);
+ */
+public class JdbcBulkInsertRepository<T> implements BulkInsertRepository<T> {
+
+    public enum Strategy {
+        JDBC_BATCH,
+        MULTI_ROW_VALUES,
+        INSERT_ALL
+    }
+
+    /** Oracle / PostgreSQL の上限(65535)より十分小さく、SQL Server(2100)以外なら通る値 */
+    public static final int DEFAULT_MAX_BIND_PARAMS = 30_000;
+
+    private static final int MAX_CACHED_SQL = 8;
+
+    private final DataSource dataSource;
+    private final String tableName;
+    private final DtoColumnBinding<T> binding;
+    private final Strategy strategy;
+    private final int rowsPerStatement;
+
+    private final String singleRowSql;
+    private final Map<Integer, String> multiRowSqlCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param dataSource    接続元
+     * @param tableName     insert先テーブル
+     * @param binding       カラム ⇔ DTOフィールド
+     * @param strategy      insert方式
+     * @param maxBindParams 1ステートメントあたりのバインド変数の上限（MULTI_ROW_VALUES / INSERT_ALL で使用）
+     */
+    public JdbcBulkInsertRepository(
+            DataSource dataSource,
+            String tableName,
+            DtoColumnBinding<T> binding,
+            Strategy strategy,
+            int maxBindParams) {
+        if (maxBindParams <= 0) throw new IllegalArgumentException("maxBindParams must be > 0");
+
+        this.dataSource = Objects.requireNonNull(dataSource, "dataSource");
+        this.tableName = Objects.requireNonNull(tableName, "tableName");
+        this.binding = Objects.requireNonNull(binding, "binding");
+        this.strategy = Objects.requireNonNull(strategy, "strategy");
+        this.rowsPerStatement = Math.max(1, maxBindParams / binding.columnCount());
+        this.singleRowSql = "INSERT INTO " + tableName + " (" + String.join(", ", binding.columns()) + ") VALUES " + placeholders();
+    }
+
+    public JdbcBulkInsertRepository(
+            DataSource dataSource,
+            String tableName,
+            DtoColumnBinding<T> binding,
+            Strategy strategy) {
+        this(dataSource, tableName, binding, strategy, DEFAULT_MAX_BIND_PARAMS);
+    }
+
+    /**
+     * 設定からテーブルごとの方式を引く。キーは "{テーブル名}.insertStrategy"。
+     * 例: RETAIL_STORE.insertStrategy=MULTI_ROW_VALUES
+     */
+    public static Strategy strategyFor(Properties props, String tableName, Strategy defaultStrategy) {
+        String v = props == null ? null : props.getProperty(tableName + ".insertStrategy");
+        if (v == null || v.trim().isEmpty()) {
+            return defaultStrategy;
+        }
+        return Strategy.valueOf(v.trim().toUpperCase());
+    }
+
+    @Override
+    public void insert(List<T> list) {
+        if (list == null || list.isEmpty()) {
+            return;
+        }
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean prevAutoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try {
+                switch (strategy) {
+                    case JDBC_BATCH:
+                        insertWithBatch(conn, list);
+                        break;
+                    case MULTI_ROW_VALUES:
+                    case INSERT_ALL:
+                        insertWithMultiRow(conn, list);
+                        break;
+                    default:
+                        throw new IllegalStateException("未対応のStrategy: " + strategy);
+                }
+                conn.commit();
+
+            } catch (SQLException | RuntimeException e) {
+                try { conn.rollback(); } catch (Exception ignore) {}
+                throw e;
+            } finally {
+                try { conn.setAutoCommit(prevAutoCommit); } catch (Exception ignore) {}
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("一括insertに失敗しました table=" + tableName + " strategy=" + strategy, e);
+        }
+    }
+
+    private void insertWithBatch(Connection conn, List<T> list) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(singleRowSql)) {
+            for (T dto : list) {
+                binding.bind(ps, 0, dto);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void insertWithMultiRow(Connection conn, List<T> list) throws SQLException {
+        int size = list.size();
+        int fullStatements = size / rowsPerStatement;
+        int rest = size % rowsPerStatement;
+
+        int from = 0;
+        if (fullStatements > 0) {
+            // 同じ行数のステートメントは1つの PreparedStatement を使い回す
+            try (PreparedStatement ps = conn.prepareStatement(multiRowSql(rowsPerStatement))) {
+                for (int s = 0; s < fullStatements; s++) {
+                    bindRows(ps, list, from, rowsPerStatement);
+                    ps.executeUpdate();
+                    from += rowsPerStatement;
+                }
+            }
+        }
+
+        if (rest > 0) {
+            try (PreparedStatement ps = conn.prepareStatement(multiRowSql(rest))) {
+                bindRows(ps, list, from, rest);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private void bindRows(PreparedStatement ps, List<T> list, int from, int rows) throws SQLException {
+        int offset = 0;
+        for (int i = from; i < from + rows; i++) {
+            offset = binding.bind(ps, offset, list.get(i));
+        }
+    }
+
+    private String multiRowSql(int rows) {
+        String sql = multiRowSqlCache.get(rows);
+        if (sql != null) {
+            return sql;
+        }
+        sql = buildMultiRowSql(rows);
+        // 端数の行数はバラバラになり得るので、キャッシュは数パターンまで
+        if (multiRowSqlCache.size() < MAX_CACHED_SQL) {
+            multiRowSqlCache.put(rows, sql);
+        }
+        return sql;
+    }
+
+    private String buildMultiRowSql(int rows) {
+        String cols = String.join(", ", binding.columns());
+        String values = placeholders();
+
+        StringBuilder sb = new StringBuilder(64 + rows * (values.length() + tableName.length() + cols.length() + 16));
+        if (strategy == Strategy.INSERT_ALL) {
+            sb.append("INSERT ALL");
+            for (int i = 0; i < rows; i++) {
+                sb.append(" INTO ").append(tableName).append(" (").append(cols).append(") VALUES ").append(values);
+            }
+            sb.append(" SELECT 1 FROM DUAL");
+        } else {
+            sb.append("INSERT INTO ").append(tableName).append(" (").append(cols).append(") VALUES ");
+            for (int i = 0; i < rows; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values);
+            }
+        }
+        return sb.toString();
+    }
+
+    private String placeholders() {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < binding.columnCount(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append('?');
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * キー文字列用の高速64bitハッシュ（標準のみ）。
+ * FNV-1a で文字を畳み込み、最後に murmur3 の fmix64 で撹拌する。
+ * seed を変えると独立したハッシュとして使える（2本で128bit指紋にする等）。
+ */
+public final class KeyHash {
+
+    private KeyHash() {}
+
+    public static final long SEED_A = 0xcbf29ce484222325L;
+    public static final long SEED_B = 0x9e3779b97f4a7c15L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public static long hash64(CharSequence s) {
+        return hash64(s, SEED_A);
+    }
+
+    public static long hash64(CharSequence s, long seed) {
+        long h = seed;
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            h ^= s.charAt(i);
+            h *= FNV_PRIME;
+        }
+        h ^= len;
+        return fmix64(h);
+    }
+
+    /** 既存のハッシュ値にもう1つの値を混ぜる（複数列のハッシュ用） */
+    public static long combine(long h, long value) {
+        return fmix64(h ^ (value + 0x9e3779b97f4a7c15L + (h << 6) + (h >>> 2)));
+    }
+
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
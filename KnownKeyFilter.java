@@ -0,0 +1,186 @@
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * DBに存在するキーの集合（事前ロード用）。UPDATE しても 0 件にしかならない行を、送る前に弾くために使う。
+ * - キー数が exactSetMaxKeys 以下なら HashSet（完全一致）
+ * - それを超えたら Bloom フィルタ（偽陽性あり＝たまに無駄なUPDATEが飛ぶだけ。偽陰性はない）
+ *
+ * キーは DB の比較に寄せて、読み込み時と mightContain の両方で同じ正規化をする：
+ * - 前後の空白を落とす（CHAR の埋め草も消える。落としすぎても無駄なUPDATEが増えるだけ）
+ * - キー列が数値型（NUMBER / INTEGER 等）なら数値として正規化する（"0123" / "123.0" / "1.23E2" → "123"）。
+ *   数値として読めない値は弾かない（DB 側の判断に任せる）
+ * ★ 大文字小文字を区別しない照合順序（MySQL / SQL Server の既定など）のキー列には使わないこと
+ *   （"abc" と "ABC" は DB では一致するが、ここでは別のキーとして弾いてしまう）
+ *
+ * 使い方：
+ *   KnownKeyFilter known = KnownKeyFilter.load(conn, "SELECT EXT_ID FROM MY_TABLE", 30_000_000, 0.01, 2_000_000);
+ *   if (!known.mightContain(key)) { ...スキップ... }
+ */
+public final class KnownKeyFilter {
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private boolean numericKey;
+    private Set<String> exact;
+    private long[] bits;
+    private long bitCount;
+    private int hashCount;
+    private long keysLoaded;
+
+    private KnownKeyFilter() {}
+
+    /**
+     * keySelectSql の1列目をキーとして全件読み込む。
+     *
+     * @param keySelectSql      例: "SELECT EXT_ID FROM MY_TABLE"
+     * @param expectedKeys      キー数の見積もり（Bloom のサイズ計算用）
+     * @param falsePositiveRate Bloom の偽陽性率（例: 0.01）
+     * @param exactSetMaxKeys   この件数までは HashSet で完全一致にする（0 なら最初から Bloom）
+     */
+    public static KnownKeyFilter load(
+            Connection conn,
+            String keySelectSql,
+            long expectedKeys,
+            double falsePositiveRate,
+            long exactSetMaxKeys
+    ) throws SQLException {
+
+        Objects.requireNonNull(conn, "conn");
+        Objects.requireNonNull(keySelectSql, "keySelectSql");
+        if (expectedKeys <= 0) throw new IllegalArgumentException("expectedKeys must be > 0");
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+
+        KnownKeyFilter f = new KnownKeyFilter();
+        if (expectedKeys <= exactSetMaxKeys) {
+            f.exact = new HashSet<>((int) Math.min(Integer.MAX_VALUE, expectedKeys * 4 / 3 + 1));
+        } else {
+            f.initBloom(expectedKeys, falsePositiveRate);
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(keySelectSql)) {
+            ps.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                f.numericKey = isNumericType(rs.getMetaData().getColumnType(1));
+                while (rs.next()) {
+                    String key = f.normalize(rs.getString(1));
+                    if (key == null) continue;
+
+                    f.add(key);
+
+                    // 見積もりより多かったら、メモリを食う前に Bloom へ切り替える
+                    if (f.exact != null && f.exact.size() > exactSetMaxKeys) {
+                        f.switchToBloom(Math.max(expectedKeys, f.exact.size() * 2L), falsePositiveRate);
+                    }
+                }
+            }
+        }
+        return f;
+    }
+
+    /** false なら「確実にDBに無い」。true は「あるかもしれない」（exact モードなら「ある」）。 */
+    public boolean mightContain(String key) {
+        key = normalize(key);
+        if (key == null) {
+            return true; // 正規化できない値は DB に任せる
+        }
+        if (exact != null) {
+            return exact.contains(key);
+        }
+        long h1 = KeyHash.hash64(key, KeyHash.SEED_A);
+        long h2 = KeyHash.hash64(key, KeyHash.SEED_B) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isExact() {
+        return exact != null;
+    }
+
+    public long keysLoaded() {
+        return keysLoaded;
+    }
+
+    /** キー列を数値型として扱っているか（読み込んだ列の型で決まる） */
+    public boolean isNumericKey() {
+        return numericKey;
+    }
+
+    /** 比較用の形にする。null・空、または数値キーで数値として読めない値は null */
+    private String normalize(String key) {
+        if (key == null) return null;
+        String s = key.trim();
+        if (s.isEmpty()) return null;
+        if (!numericKey) return s;
+        try {
+            BigDecimal d = new BigDecimal(s);
+            return d.signum() == 0 ? "0" : d.stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNumericType(int sqlType) {
+        switch (sqlType) {
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.REAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void add(String key) {
+        keysLoaded++;
+        if (exact != null) {
+            exact.add(key);
+            return;
+        }
+        long h1 = KeyHash.hash64(key, KeyHash.SEED_A);
+        long h2 = KeyHash.hash64(key, KeyHash.SEED_B) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private void initBloom(long n, double p) {
+        // m = -n ln p / (ln 2)^2,  k = m/n ln 2
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, Math.min(m, (long) Integer.MAX_VALUE * 64));
+        this.bitCount = m;
+        this.bits = new long[(int) ((m + 63) >>> 6)];
+        this.hashCount = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    private void switchToBloom(long n, double p) {
+        Set<String> keys = exact;
+        exact = null;
+        initBloom(n, p);
+        keysLoaded = 0;
+        for (String k : keys) {
+            add(k);
+        }
+    }
+}
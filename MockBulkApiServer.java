@@ -0,0 +1,417 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ローカル確認用の Bulk API 2.0（ingest）もどき。JDK 同梱の com.sun.net.httpserver だけで動く。
+ * - POST   /services/data/{ver}/jobs/ingest                     ジョブ作成
+ * - PUT    /services/data/{ver}/jobs/ingest/{id}/batches        CSVアップロード
+ * - PATCH  /services/data/{ver}/jobs/ingest/{id}                UploadComplete / Aborted
+ * - GET    /services/data/{ver}/jobs/ingest/{id}                状態（UploadComplete 後 pollsUntilComplete 回目で JobComplete）
+ * - GET    /services/data/{ver}/jobs/ingest/{id}/successfulResults / failedResults
+ * - GET    /services/data/{ver}/jobs/query/{id}/results?maxRecords=&locator=
+ *                                                               クエリ結果（addQueryResult で登録したCSVを maxRecords 件ずつ）
+ *
+ * 結果CSVは「アップロードしたCSVの各行を成功扱い」（sf__Id は連番）。
+ * failValue を含む行だけは失敗行として failedResults に入る。
+ * uploadFailures 回目までのアップロードは 503（Retry-After: 0）を返すので、再試行の確認にも使える。
+ * クエリ結果は各ページにヘッダー行を付け、Sforce-Locator（最後のページは "null"）を返す。
+ * setQueryPageDelayMillis を指定すると、ヘッダーを返してから本体を書くまで待つ（遅い回線の代わり）。
+ *
+ * 使い方：
+ *   try (MockBulkApiServer mock = MockBulkApiServer.start(2, 1, "NG")) {
+ *       BulkApiAsyncClient api = new BulkApiAsyncClient(mock.baseUrl(), "v60.0", "dummy");
+ *       ...
+ *       mock.maxConcurrentOpenJobs();  // 同時に開いていたジョブ数の最大
+ *   }
+ *   BulkPartOrchestrator / BulkQueryResultFetcher をまとめて確かめるなら BulkApiMockCheck.main
+ */
+public final class MockBulkApiServer implements AutoCloseable {
+
+    private static final Pattern JOB_PATH = Pattern.compile("/services/data/[^/]+/jobs/ingest(?:/([^/]+)(?:/([^/]+))?)?");
+    private static final Pattern QUERY_RESULTS_PATH = Pattern.compile("/services/data/[^/]+/jobs/query/([^/]+)/results");
+    private static final int DEFAULT_QUERY_PAGE_SIZE = 1000;
+
+    private final HttpServer server;
+    private final ExecutorService pool;
+    private final int pollsUntilComplete;
+    private final String failValue;
+    private final AtomicInteger uploadFailuresLeft;
+    private final AtomicInteger uploadsRejected = new AtomicInteger();
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger jobSeq = new AtomicInteger();
+    private final AtomicInteger recordSeq = new AtomicInteger();
+    private final AtomicInteger openJobs = new AtomicInteger();
+    private final AtomicInteger maxOpenJobs = new AtomicInteger();
+
+    private final Map<String, QueryResult> queries = new ConcurrentHashMap<>();
+    private final AtomicInteger querySeq = new AtomicInteger();
+    private final AtomicInteger queryPagesServed = new AtomicInteger();
+    private final AtomicInteger queryPagesInFlight = new AtomicInteger();
+    private final AtomicInteger maxQueryPagesInFlight = new AtomicInteger();
+    private volatile long queryPageDelayMillis;
+
+    private static final class Job {
+        final String id;
+        final String object;
+        final String operation;
+        volatile String state = "Open";
+        volatile String csv = "";
+        final AtomicInteger polls = new AtomicInteger();
+        volatile String success;
+        volatile String failed;
+        volatile long processed;
+        volatile long failedCount;
+
+        Job(String id, String object, String operation) {
+            this.id = id;
+            this.object = object;
+            this.operation = operation;
+        }
+    }
+
+    private static final class QueryResult {
+        final String header;          // 改行付き
+        final List<String> records;   // 1件ずつ（改行付き、エスケープ済み）
+
+        QueryResult(String header, List<String> records) {
+            this.header = header;
+            this.records = records;
+        }
+    }
+
+    private MockBulkApiServer(int pollsUntilComplete, int uploadFailures, String failValue) throws IOException {
+        this.pollsUntilComplete = pollsUntilComplete;
+        this.failValue = failValue;
+        this.uploadFailuresLeft = new AtomicInteger(uploadFailures);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.pool = Executors.newCachedThreadPool();
+        server.setExecutor(pool);
+        server.createContext("/services/data/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @param pollsUntilComplete UploadComplete 後、何回目の状態取得で JobComplete にするか
+     * @param uploadFailures     最初の何回のアップロードを 503 にするか
+     * @param failValue          この文字列を含む行は失敗行にする（null なら全行成功）
+     */
+    public static MockBulkApiServer start(int pollsUntilComplete, int uploadFailures, String failValue) throws IOException {
+        return new MockBulkApiServer(pollsUntilComplete, uploadFailures, failValue);
+    }
+
+    /** 例: http://127.0.0.1:54321 */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int jobsCreated() {
+        return jobSeq.get();
+    }
+
+    /** 503 を返したアップロードの回数 */
+    public int uploadsRejected() {
+        return uploadsRejected.get();
+    }
+
+    /** UploadComplete〜JobComplete の間（＝ジョブが動いている間）に同時に存在したジョブ数の最大 */
+    public int maxConcurrentOpenJobs() {
+        return maxOpenJobs.get();
+    }
+
+    /** クエリ結果を登録して jobId を返す（ジョブは JobComplete 済みの扱い） */
+    public String addQueryResult(String csv) throws IOException {
+        CsvToolkit.CsvParser p = new CsvToolkit.CsvParser(new java.io.StringReader(csv));
+        List<String> header = p.nextRecord();
+        if (header == null) throw new IllegalArgumentException("csv has no header");
+        List<String> records = new ArrayList<>();
+        List<String> rec;
+        while ((rec = p.nextRecord()) != null) records.add(csvLine(rec));
+
+        String id = String.format("750MOCKQ%07d", querySeq.incrementAndGet());
+        queries.put(id, new QueryResult(csvLine(header), records));
+        return id;
+    }
+
+    /** クエリ結果ページのヘッダーを返してから本体を書くまでの待ち時間 */
+    public void setQueryPageDelayMillis(long millis) {
+        this.queryPageDelayMillis = millis;
+    }
+
+    public int queryPagesServed() {
+        return queryPagesServed.get();
+    }
+
+    /** 同時に受信中だったクエリ結果ページ数の最大（先読みの確認用） */
+    public int maxConcurrentQueryPages() {
+        return maxQueryPagesInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+
+    // -------------------------
+    // Internals
+    // -------------------------
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Matcher q = QUERY_RESULTS_PATH.matcher(ex.getRequestURI().getPath());
+            if (q.matches() && ex.getRequestMethod().equals("GET")) {
+                queryResults(ex, q.group(1));
+                return;
+            }
+            Matcher m = JOB_PATH.matcher(ex.getRequestURI().getPath());
+            if (!m.matches()) {
+                send(ex, 404, "application/json", "[{\"errorCode\":\"NOT_FOUND\"}]");
+                return;
+            }
+            String id = m.group(1);
+            String sub = m.group(2);
+            String method = ex.getRequestMethod();
+
+            if (id == null) {
+                if (!method.equals("POST")) {
+                    send(ex, 405, "application/json", "[]");
+                    return;
+                }
+                createJob(ex, body);
+                return;
+            }
+
+            Job job = jobs.get(id);
+            if (job == null) {
+                send(ex, 404, "application/json", "[{\"errorCode\":\"NOT_FOUND\",\"message\":\"job " + id + "\"}]");
+                return;
+            }
+
+            if (sub == null && method.equals("GET")) {
+                getJob(ex, job);
+            } else if (sub == null && method.equals("PATCH")) {
+                patchJob(ex, job, body);
+            } else if ("batches".equals(sub) && method.equals("PUT")) {
+                upload(ex, job, body);
+            } else if ("successfulResults".equals(sub) && method.equals("GET")) {
+                send(ex, 200, "text/csv", job.success == null ? "" : job.success);
+            } else if ("failedResults".equals(sub) && method.equals("GET")) {
+                send(ex, 200, "text/csv", job.failed == null ? "" : job.failed);
+            } else {
+                send(ex, 405, "application/json", "[]");
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void createJob(HttpExchange ex, String body) throws IOException {
+        String object = SalesforceResponseParser.pick(body, "object").get("object");
+        String operation = SalesforceResponseParser.pick(body, "operation").get("operation");
+        String id = String.format("750MOCK%08d", jobSeq.incrementAndGet());
+        Job job = new Job(id, object, operation);
+        jobs.put(id, job);
+        send(ex, 200, "application/json", jobJson(job));
+    }
+
+    private void upload(HttpExchange ex, Job job, String body) throws IOException {
+        if (uploadFailuresLeft.getAndDecrement() > 0) {
+            uploadsRejected.incrementAndGet();
+            ex.getResponseHeaders().add("Retry-After", "0");
+            send(ex, 503, "text/plain", "Service Unavailable");
+            return;
+        }
+        if (!"Open".equals(job.state)) {
+            send(ex, 409, "application/json", "[{\"errorCode\":\"INVALIDJOBSTATE\"}]");
+            return;
+        }
+        job.csv = body;
+        send(ex, 201, "text/plain", "");
+    }
+
+    private void patchJob(HttpExchange ex, Job job, String body) throws IOException {
+        String state = SalesforceResponseParser.pick(body, "state").get("state");
+        if ("UploadComplete".equals(state)) {
+            job.state = "UploadComplete";
+            int open = openJobs.incrementAndGet();
+            maxOpenJobs.accumulateAndGet(open, Math::max);
+        } else if ("Aborted".equals(state)) {
+            if ("UploadComplete".equals(job.state) || "InProgress".equals(job.state)) openJobs.decrementAndGet();
+            job.state = "Aborted";
+        } else {
+            send(ex, 400, "application/json", "[{\"errorCode\":\"INVALIDJOBSTATE\"}]");
+            return;
+        }
+        send(ex, 200, "application/json", jobJson(job));
+    }
+
+    private void getJob(HttpExchange ex, Job job) throws IOException {
+        synchronized (job) {
+            if ("UploadComplete".equals(job.state) || "InProgress".equals(job.state)) {
+                if (job.polls.incrementAndGet() >= pollsUntilComplete) {
+                    complete(job);
+                    openJobs.decrementAndGet();
+                } else {
+                    job.state = "InProgress";
+                }
+            }
+        }
+        send(ex, 200, "application/json", jobJson(job));
+    }
+
+    /** アップロードされたCSVから結果CSVを作る（CsvToolkit と同じ読み方・書き方） */
+    private void complete(Job job) throws IOException {
+        CsvToolkit.CsvParser p = new CsvToolkit.CsvParser(new java.io.StringReader(job.csv));
+        List<String> header = p.nextRecord();
+
+        StringBuilder ok = new StringBuilder();
+        StringBuilder ng = new StringBuilder();
+        if (header != null) {
+            ok.append("\"sf__Id\",\"sf__Created\"");
+            ng.append("\"sf__Id\",\"sf__Error\"");
+            for (String h : header) {
+                ok.append(',').append(CsvToolkit.CsvWriter.escape(h));
+                ng.append(',').append(CsvToolkit.CsvWriter.escape(h));
+            }
+            ok.append('\n');
+            ng.append('\n');
+
+            List<String> rec;
+            long processed = 0, failed = 0;
+            while ((rec = p.nextRecord()) != null) {
+                processed++;
+                StringBuilder cols = new StringBuilder();
+                for (String c : rec) cols.append(',').append(CsvToolkit.CsvWriter.escape(c));
+
+                if (failValue != null && rec.stream().anyMatch(c -> c.contains(failValue))) {
+                    failed++;
+                    ng.append("\"\",\"FIELD_CUSTOM_VALIDATION_EXCEPTION:mock:--\"").append(cols).append('\n');
+                } else {
+                    ok.append(String.format("\"001MOCK%011d\",\"true\"", recordSeq.incrementAndGet())).append(cols).append('\n');
+                }
+            }
+            job.processed = processed;
+            job.failedCount = failed;
+        }
+        job.success = ok.toString();
+        job.failed = ng.toString();
+        job.state = "JobComplete";
+    }
+
+    private void queryResults(HttpExchange ex, String id) throws IOException {
+        QueryResult qr = queries.get(id);
+        if (qr == null) {
+            send(ex, 404, "application/json", "[{\"errorCode\":\"NOT_FOUND\",\"message\":\"job " + id + "\"}]");
+            return;
+        }
+        Map<String, String> params = queryParams(ex.getRequestURI().getRawQuery());
+        int from;
+        int size;
+        try {
+            from = params.containsKey("locator") ? Integer.parseInt(params.get("locator")) : 0;
+            size = params.containsKey("maxRecords") ? Integer.parseInt(params.get("maxRecords")) : DEFAULT_QUERY_PAGE_SIZE;
+        } catch (NumberFormatException e) {
+            send(ex, 400, "application/json", "[{\"errorCode\":\"INVALID_LOCATOR\"}]");
+            return;
+        }
+        if (from < 0 || from > qr.records.size() || size <= 0) {
+            send(ex, 400, "application/json", "[{\"errorCode\":\"INVALID_LOCATOR\"}]");
+            return;
+        }
+
+        int to = Math.min(qr.records.size(), from + size);
+        StringBuilder page = new StringBuilder(qr.header);
+        for (int i = from; i < to; i++) page.append(qr.records.get(i));
+        byte[] b = page.toString().getBytes(StandardCharsets.UTF_8);
+
+        // 受信中 = ヘッダーを返してから本体を書き始めるまで。
+        // 書き終わりまで数えると、クライアントが受け取って次ページを始めた後に減ることがあり、先読み数を多めに見てしまう
+        int inFlight = queryPagesInFlight.incrementAndGet();
+        maxQueryPagesInFlight.accumulateAndGet(inFlight, Math::max);
+        boolean counted = true;
+        try {
+            ex.getResponseHeaders().set("Content-Type", "text/csv; charset=UTF-8");
+            ex.getResponseHeaders().set("Sforce-Locator", to < qr.records.size() ? Integer.toString(to) : "null");
+            ex.getResponseHeaders().set("Sforce-NumberOfRecords", Integer.toString(to - from));
+            ex.sendResponseHeaders(200, b.length);
+            long delay = queryPageDelayMillis;
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            queryPagesInFlight.decrementAndGet();
+            counted = false;
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(b);
+            }
+            queryPagesServed.incrementAndGet();
+        } finally {
+            if (counted) queryPagesInFlight.decrementAndGet();
+        }
+    }
+
+    private static Map<String, String> queryParams(String rawQuery) {
+        Map<String, String> out = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return out;
+        for (String kv : rawQuery.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(URLDecoder.decode(kv.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static String csvLine(List<String> rec) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rec.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(CsvToolkit.CsvWriter.escape(rec.get(i)));
+        }
+        return sb.append('\n').toString();
+    }
+
+    private static String jobJson(Job job) {
+        return "{\"id\":\"" + job.id + "\""
+                + ",\"object\":\"" + job.object + "\""
+                + ",\"operation\":\"" + job.operation + "\""
+                + ",\"state\":\"" + job.state + "\""
+                + ",\"contentType\":\"CSV\""
+                + ",\"numberRecordsProcessed\":" + job.processed
+                + ",\"numberRecordsFailed\":" + job.failedCount
+                + "}";
+    }
+
+    private static void send(HttpExchange ex, int code, String contentType, String body) throws IOException {
+        byte[] b = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+        ex.sendResponseHeaders(code, b.length == 0 ? -1 : b.length);
+        if (b.length > 0) {
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(b);
+            }
+        }
+    }
+}
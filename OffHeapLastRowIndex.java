@@ -0,0 +1,185 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * キー → 最後に出現した行番号 を持つオープンアドレス法のハッシュ表（オフヒープ）。
+ * 数千万キーでもヒープを使わないように、スロットもキー本体も DirectByteBuffer に置く。
+ *
+ * - スロットには64bitの指紋（KeyHash の SEED_A）と、キー置き場（UTF-8 バイト列）の位置を持つ。
+ *   指紋が一致したらキーのバイト列を突き合わせてから同一キーとみなす（完全一致。誤判定はしない）。
+ *   指紋だけ一致した別キーは次のスロットへ進む。
+ * - expectedKeys の見積もりを超えて表が埋まったら、以降のキーはヒープ上の HashMap（完全一致）に退避する
+ *   （見積もりが外れても結果は正しい。遅くなるだけ）。
+ * - 1スロット = fp(8) + keyRef(8) + rowNo(8) = 24byte。負荷率は最大 0.7。
+ *   キー置き場は 1キー = 4 + UTF-8 バイト数。
+ *   例: 5000万キー・18文字キー → スロット約 1.7GB + キー約 1.1GB のオフヒープ（-XX:MaxDirectMemorySize に注意）
+ *
+ * スレッドセーフではない。
+ */
+public final class OffHeapLastRowIndex implements AutoCloseable {
+
+    private static final int SLOT_BYTES = 24;
+    private static final int SEGMENT_SHIFT = 24;                 // 1セグメント = 16M スロット = 384MB
+    private static final long SEGMENT_SLOTS = 1L << SEGMENT_SHIFT;
+    private static final double MAX_LOAD = 0.7;
+    private static final int KEY_SEGMENT_SHIFT = 26;             // キー置き場 1セグメント = 最大 64MB
+    private static final int KEY_SEGMENT_BYTES = 1 << KEY_SEGMENT_SHIFT;
+    private static final int KEY_SEGMENT_MIN = 1 << 16;
+
+    private ByteBuffer[] segments;
+    private List<ByteBuffer> keySegments = new ArrayList<>();
+    private int keyPos;
+    private final long capacity;   // 2のべき乗
+    private final long mask;
+    private final long maxEntries;
+
+    private long size;
+    private final Map<String, Long> overflow = new HashMap<>();
+
+    public OffHeapLastRowIndex(long expectedKeys) {
+        if (expectedKeys <= 0) throw new IllegalArgumentException("expectedKeys must be > 0");
+
+        long cap = Long.highestOneBit(Math.max(16L, (long) Math.ceil(expectedKeys / MAX_LOAD)));
+        if (cap < expectedKeys / MAX_LOAD) cap <<= 1;
+
+        this.capacity = cap;
+        this.mask = cap - 1;
+        this.maxEntries = (long) (cap * MAX_LOAD);
+
+        int segCount = (int) ((cap + SEGMENT_SLOTS - 1) / SEGMENT_SLOTS);
+        this.segments = new ByteBuffer[segCount];
+        for (int i = 0; i < segCount; i++) {
+            long slots = Math.min(SEGMENT_SLOTS, cap - (long) i * SEGMENT_SLOTS);
+            // allocateDirect はゼロ初期化される（fp=0 を空きとみなす）
+            segments[i] = ByteBuffer.allocateDirect((int) (slots * SLOT_BYTES));
+        }
+    }
+
+    /** key の最終出現行を rowNo で上書きする（後勝ち） */
+    public void put(String key, long rowNo) {
+        Long prev = overflow.get(key);
+        if (prev != null) {
+            overflow.put(key, rowNo);
+            return;
+        }
+
+        long fp = fingerprint(key);
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+
+        long slot = fp & mask;
+        while (true) {
+            ByteBuffer seg = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            int off = (int) (slot & (SEGMENT_SLOTS - 1)) * SLOT_BYTES;
+
+            long a = seg.getLong(off);
+
+            if (a == 0) {
+                if (size >= maxEntries || 4 + bytes.length > KEY_SEGMENT_BYTES) {
+                    overflow.put(key, rowNo);
+                    return;
+                }
+                seg.putLong(off, fp);
+                seg.putLong(off + 8, storeKey(bytes));
+                seg.putLong(off + 16, rowNo);
+                size++;
+                return;
+            }
+            if (a == fp && keyEquals(seg.getLong(off + 8), bytes)) {
+                seg.putLong(off + 16, rowNo);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** key の最終出現行。未登録なら -1。 */
+    public long lastRowOf(String key) {
+        if (!overflow.isEmpty()) {
+            Long v = overflow.get(key);
+            if (v != null) return v;
+        }
+
+        long fp = fingerprint(key);
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+
+        long slot = fp & mask;
+        while (true) {
+            ByteBuffer seg = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            int off = (int) (slot & (SEGMENT_SLOTS - 1)) * SLOT_BYTES;
+
+            long a = seg.getLong(off);
+
+            if (a == 0) {
+                return -1;
+            }
+            if (a == fp && keyEquals(seg.getLong(off + 8), bytes)) {
+                return seg.getLong(off + 16);
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** 登録済みのキー数（退避分を含む） */
+    public long size() {
+        return size + overflow.size();
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    /** ヒープへ退避したキー数（0 でなければ expectedKeys の見積もり不足） */
+    public long overflowCount() {
+        return overflow.size();
+    }
+
+    /** DirectByteBuffer への参照を外す（実メモリの解放はGC時） */
+    @Override
+    public void close() {
+        segments = new ByteBuffer[0];
+        keySegments = new ArrayList<>();
+        overflow.clear();
+    }
+
+    /** キー置き場に [長さ(4)][UTF-8 バイト列] を追記し、その位置を返す（セグメントはまたがない） */
+    private long storeKey(byte[] bytes) {
+        int need = 4 + bytes.length;
+        int last = keySegments.size() - 1;
+        if (last < 0 || keyPos + need > keySegments.get(last).capacity()) {
+            // 小さい表で 64MB を抱えないよう、倍々で 64MB まで育てる
+            int cap = last < 0 ? KEY_SEGMENT_MIN : Math.min(KEY_SEGMENT_BYTES, keySegments.get(last).capacity() * 2);
+            while (cap < need) cap <<= 1;
+            keySegments.add(ByteBuffer.allocateDirect(cap));
+            keyPos = 0;
+        }
+        int segNo = keySegments.size() - 1;
+        ByteBuffer seg = keySegments.get(segNo);
+        seg.putInt(keyPos, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            seg.put(keyPos + 4 + i, bytes[i]);
+        }
+        long ref = ((long) segNo << KEY_SEGMENT_SHIFT) | keyPos;
+        keyPos += need;
+        return ref;
+    }
+
+    private boolean keyEquals(long ref, byte[] bytes) {
+        ByteBuffer seg = keySegments.get((int) (ref >>> KEY_SEGMENT_SHIFT));
+        int pos = (int) (ref & (KEY_SEGMENT_BYTES - 1));
+        if (seg.getInt(pos) != bytes.length) return false;
+        for (int i = 0; i < bytes.length; i++) {
+            if (seg.get(pos + 4 + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    private static long fingerprint(String key) {
+        long h = KeyHash.hash64(key, KeyHash.SEED_A);
+        // 空きスロット(fp=0)と区別するため 0 は使わない
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,372 @@
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * BulkSuccessCsvToDbUpdater の並列版。1セッションで頭打ちになる大量更新を、N本のコネクションに分ける。
+ * - CSVは1回だけ読む（読み込みスレッド1本）
+ * - キーのハッシュで N 個のワーカーに振り分ける（同じキーは必ず同じワーカー＝同一キーの更新順は保たれる）
+ * - ワーカーはそれぞれ DataSource から取った自分のコネクションと PreparedStatement でバッチ更新する
+ *
+ * 失敗時の方針（FailurePolicy）：
+ * - ALL_OR_NOTHING : 途中commitしない。全ワーカー成功なら全コネクションを commit、1本でも失敗したら全部 rollback。
+ *                    ★ commit はコネクションごとなので、commit 中にDBが落ちた場合だけは一部反映になり得る（XAではない）
+ * - BEST_EFFORT    : ワーカーごとに commitEveryBatches で途中commit。失敗したワーカーは未commit分を rollback し、
+ *                    以降そのワーカー担当の行は rowsFailed に数える。他のワーカーは最後まで続けて commit する。
+ *
+ * ★ workers 本のコネクションを同時に使うので、コネクションプールの上限以下にすること。
+ *
+ * SQLのプレースホルダ順は BulkSuccessCsvToDbUpdater と同じ（sf_id -> external_key）。
+ */
+public final class ParallelSuccessCsvToDbUpdater {
+
+    public enum FailurePolicy {
+        ALL_OR_NOTHING,
+        BEST_EFFORT
+    }
+
+    /** ワーカー1本あたりのキューに溜めるチャンク数（読み込みが先走りすぎないように） */
+    private static final int QUEUE_CHUNKS_PER_WORKER = 4;
+
+    private static final String[] POISON = new String[0];
+
+    private ParallelSuccessCsvToDbUpdater() {}
+
+    /**
+     * @param dataSource         コネクションプール（workers 本を同時に借りる）
+     * @param successCsvFile     保存済みの成功結果CSVファイル
+     * @param csvCharset         CSVの文字コード（通常UTF-8）
+     * @param externalKeyColName CSV内の突合キー列名（例: "ExternalId__c"）
+     * @param updateSql          更新SQL（例: "UPDATE t SET sf_id=? WHERE external_id=?"）
+     * @param workers            並列数（= 使うコネクション数）
+     * @param batchSize          ワーカーごとのバッチサイズ（例: 1000）
+     * @param commitEveryBatches 何バッチごとにcommitするか（BEST_EFFORT のみ。ALL_OR_NOTHING では最後に1回）
+     * @param policy             失敗時の方針
+     *
+     * @return 全ワーカー分をまとめたサマリ（ALL_OR_NOTHING で失敗した場合は例外）
+     */
+    public static ParallelSummary updateSfIdsFromSuccessCsv(
+            DataSource dataSource,
+            File successCsvFile,
+            Charset csvCharset,
+            String externalKeyColName,
+            String updateSql,
+            int workers,
+            int batchSize,
+            int commitEveryBatches,
+            FailurePolicy policy
+    ) throws Exception {
+
+        Objects.requireNonNull(dataSource, "dataSource");
+        Objects.requireNonNull(successCsvFile, "successCsvFile");
+        Objects.requireNonNull(csvCharset, "csvCharset");
+        Objects.requireNonNull(externalKeyColName, "externalKeyColName");
+        Objects.requireNonNull(updateSql, "updateSql");
+        Objects.requireNonNull(policy, "policy");
+
+        if (workers <= 0) throw new IllegalArgumentException("workers must be > 0");
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (commitEveryBatches <= 0) throw new IllegalArgumentException("commitEveryBatches must be > 0");
+
+        // コネクションは先に全部借りる（プール不足ならここで失敗させる）
+        List<Worker> ws = new ArrayList<>(workers);
+        AtomicBoolean abort = new AtomicBoolean(false);
+        try {
+            for (int i = 0; i < workers; i++) {
+                ws.add(new Worker(dataSource.getConnection(), updateSql, batchSize, commitEveryBatches, policy, abort));
+            }
+        } catch (Exception e) {
+            for (Worker w : ws) w.close();
+            throw e;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "sf-id-update-worker");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long rowsRead = 0;
+        long rowsSkipped = 0;
+        Exception readError = null;
+        boolean settled = false; // 全ワーカーの commit / rollback / close を済ませたか
+
+        try {
+            try {
+                List<Future<?>> futures = new ArrayList<>(workers);
+                for (Worker w : ws) {
+                    futures.add(pool.submit(w));
+                }
+
+                // 読み込み：キーのハッシュでワーカーに振り分ける
+                try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(successCsvFile), csvCharset))) {
+                    CsvToolkit.CsvParser parser = new CsvToolkit.CsvParser(reader);
+
+                    List<String> header = parser.nextRecord();
+                    if (header != null) {
+                        int[] cols = BulkSuccessCsvToDbUpdater.resolveColumns(header, externalKeyColName);
+                        int sfIdIdx = cols[0];
+                        int extIdx = cols[1];
+
+                        // チャンク = [sfId, key, sfId, key, ...]
+                        String[][] chunks = new String[workers][];
+                        int[] fill = new int[workers];
+
+                        List<String> rec;
+                        while ((rec = parser.nextRecord()) != null) {
+                            rowsRead++;
+
+                            String sfId = BulkSuccessCsvToDbUpdater.get(rec, sfIdIdx);
+                            String externalKey = BulkSuccessCsvToDbUpdater.get(rec, extIdx);
+
+                            if (BulkSuccessCsvToDbUpdater.isBlank(sfId) || BulkSuccessCsvToDbUpdater.isBlank(externalKey)) {
+                                rowsSkipped++;
+                                continue;
+                            }
+
+                            int w = Math.floorMod(KeyHash.hash64(externalKey), workers);
+                            if (chunks[w] == null) chunks[w] = new String[batchSize * 2];
+                            chunks[w][fill[w]++] = sfId;
+                            chunks[w][fill[w]++] = externalKey;
+
+                            if (fill[w] == chunks[w].length) {
+                                if (abort.get()) break;
+                                ws.get(w).queue.put(chunks[w]);
+                                chunks[w] = null;
+                                fill[w] = 0;
+                            }
+                        }
+
+                        // 端数
+                        for (int w = 0; w < workers && !abort.get(); w++) {
+                            if (fill[w] > 0) {
+                                ws.get(w).queue.put(Arrays.copyOf(chunks[w], fill[w]));
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    readError = e;
+                    abort.set(true);
+                }
+
+                for (Worker w : ws) {
+                    w.queue.put(POISON);
+                }
+                for (Future<?> f : futures) {
+                    f.get();
+                }
+            } finally {
+                pool.shutdownNow();
+                awaitQuietly(pool);
+            }
+
+            // 確定（commit / rollback）
+            List<Exception> failures = new ArrayList<>();
+            for (Worker w : ws) {
+                if (w.error != null) failures.add(w.error);
+            }
+
+            boolean commitAll = policy == FailurePolicy.BEST_EFFORT || (failures.isEmpty() && readError == null);
+
+            settled = true;
+            for (Worker w : ws) {
+                try {
+                    if (commitAll && w.error == null) {
+                        w.conn.commit();
+                    } else {
+                        w.conn.rollback();
+                    }
+                } catch (Exception e) {
+                    if (w.error == null) {
+                        w.error = e;
+                        failures.add(e);
+                    }
+                } finally {
+                    w.close();
+                }
+            }
+
+            if (readError != null) {
+                for (Exception f : failures) readError.addSuppressed(f);
+                throw readError;
+            }
+            if (policy == FailurePolicy.ALL_OR_NOTHING && !failures.isEmpty()) {
+                Exception first = failures.get(0);
+                for (int i = 1; i < failures.size(); i++) first.addSuppressed(failures.get(i));
+                throw first;
+            }
+
+            long rowsApplied = 0;
+            long rowsFailed = 0;
+            long batchesExecuted = 0;
+            for (Worker w : ws) {
+                rowsApplied += w.error == null ? w.rowsApplied : w.rowsCommitted;
+                rowsFailed += w.rowsFailed;
+                batchesExecuted += w.batchesExecuted;
+            }
+
+            return new ParallelSummary(rowsRead, rowsApplied, rowsSkipped, batchesExecuted, workers, policy, rowsFailed, failures);
+        } finally {
+            // 待ち中の割り込み・ワーカーの異常終了などで確定まで来なかった：全部 rollback して返す（未確定のまま残さない）
+            if (!settled) {
+                for (Worker w : ws) {
+                    try { w.conn.rollback(); } catch (Exception ignore) {}
+                    w.close();
+                }
+            }
+        }
+    }
+
+    /** ワーカーが止まるのを待つ（rollback と executeBatch が同じコネクションで重ならないように） */
+    private static void awaitQuietly(ExecutorService pool) {
+        try {
+            pool.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 1コネクション分の更新ワーカー */
+    private static final class Worker implements Runnable {
+        final Connection conn;
+        final boolean prevAutoCommit;
+        final String updateSql;
+        final int batchSize;
+        final int commitEveryBatches;
+        final FailurePolicy policy;
+        final AtomicBoolean abort;
+        final BlockingQueue<String[]> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS_PER_WORKER);
+
+        long rowsApplied;
+        long rowsCommitted;
+        long rowsFailed;
+        long batchesExecuted;
+        volatile Exception error;
+
+        Worker(Connection conn, String updateSql, int batchSize, int commitEveryBatches,
+               FailurePolicy policy, AtomicBoolean abort) throws Exception {
+            this.conn = conn;
+            this.prevAutoCommit = conn.getAutoCommit();
+            this.updateSql = updateSql;
+            this.batchSize = batchSize;
+            this.commitEveryBatches = commitEveryBatches;
+            this.policy = policy;
+            this.abort = abort;
+            conn.setAutoCommit(false);
+        }
+
+        @Override
+        public void run() {
+            PreparedStatement ps = null;
+            try {
+                ps = conn.prepareStatement(updateSql);
+            } catch (Exception e) {
+                fail(e);
+            }
+
+            try {
+                int batchesSinceCommit = 0;
+                long rowsSinceCommit = 0;
+                while (true) {
+                    String[] chunk = queue.take();
+                    if (chunk == POISON) break;
+
+                    // 失敗後も読み込みスレッドが詰まらないように、キューは最後まで抜き続ける
+                    if (error != null || (policy == FailurePolicy.ALL_OR_NOTHING && abort.get())) {
+                        rowsFailed += chunk.length / 2;
+                        continue;
+                    }
+
+                    try {
+                        for (int i = 0; i < chunk.length; i += 2) {
+                            ps.setString(1, chunk[i]);
+                            ps.setString(2, chunk[i + 1]);
+                            ps.addBatch();
+                        }
+                        rowsApplied += BulkSuccessCsvToDbUpdater.sum(ps.executeBatch());
+                        batchesExecuted++;
+                        batchesSinceCommit++;
+                        rowsSinceCommit += chunk.length / 2;
+
+                        if (policy == FailurePolicy.BEST_EFFORT && batchesSinceCommit >= commitEveryBatches) {
+                            conn.commit();
+                            rowsCommitted = rowsApplied;
+                            batchesSinceCommit = 0;
+                            rowsSinceCommit = 0;
+                        }
+                    } catch (Throwable e) {
+                        // 失敗したチャンク＋未commitで rollback される分
+                        rowsFailed += chunk.length / 2 + rowsSinceCommit;
+                        fail(e);
+                        try { ps.clearBatch(); } catch (Exception ignore) {}
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            } catch (Throwable e) {
+                // Error 等でも error を必ず立てる（確定側が rollback できるように）
+                fail(e);
+            } finally {
+                if (ps != null) {
+                    try { ps.close(); } catch (Exception ignore) {}
+                }
+            }
+        }
+
+        private void fail(Throwable t) {
+            Exception e = t instanceof Exception ? (Exception) t : new IllegalStateException("更新ワーカーが異常終了しました", t);
+            error = e;
+            if (policy == FailurePolicy.ALL_OR_NOTHING) abort.set(true);
+        }
+
+        void close() {
+            try { conn.setAutoCommit(prevAutoCommit); } catch (Exception ignore) {}
+            try { conn.close(); } catch (Exception ignore) {}
+        }
+    }
+
+    /** 並列版の結果。rowsApplied は commit された分（失敗ワーカーは最後に commit できた所まで）。 */
+    public static final class ParallelSummary extends BulkSuccessCsvToDbUpdater.Summary {
+        public final int workers;
+        public final FailurePolicy policy;
+        /** 失敗したワーカーの担当で、反映されなかった（rollback / 未処理）行数。BEST_EFFORT のみ 0 以外になり得る */
+        public final long rowsFailed;
+        public final List<Exception> failures;
+
+        public ParallelSummary(long rowsRead, long rowsApplied, long rowsSkipped, long batchesExecuted,
+                               int workers, FailurePolicy policy, long rowsFailed, List<Exception> failures) {
+            super(rowsRead, rowsApplied, rowsSkipped, batchesExecuted);
+            this.workers = workers;
+            this.policy = policy;
+            this.rowsFailed = rowsFailed;
+            this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+        }
+
+        @Override
+        public String toString() {
+            return "ParallelSummary{rowsRead=" + rowsRead +
+                    ", rowsApplied=" + rowsApplied +
+                    ", rowsSkipped=" + rowsSkipped +
+                    ", rowsFailed=" + rowsFailed +
+                    ", batchesExecuted=" + batchesExecuted +
+                    ", workers=" + workers +
+                    ", policy=" + policy +
+                    ", failures=" + failures.size() + "}";
+        }
+    }
+}
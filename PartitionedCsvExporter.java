@@ -0,0 +1,182 @@
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * RotatingCsvWriter を N 本並べて、分割CSVを並列に書き出す。
+ * - 読み込み（呼び出し元スレッド）が batchSize 件ずつ共有キューに積み、
+ *   N 個のワーカーがそれぞれ自分のパート系列（payload_p0_001.csv, payload_p0_002.csv …）に書く
+ * - 行の整形（toColumns）とエンコードもワーカー側で行うので、コア数・ディスク数に応じて伸びる
+ * - 分割（最大バイト数・レコード途中で切らない）とヘッダーの扱いは RotatingCsvWriter と同じ
+ * - 最後に {baseName}_manifest.csv（file,records,bytes）を書く
+ *
+ * ★ 行がどのパートに入るかは決まらない（パート間の順序は保証しない。パート内は読み込み順）。
+ * ★ 1件も来なかったパーティションはファイルを作らない。
+ *
+ * 使い方：
+ *   List<RotatingCsvWriter.PartInfo> parts = PartitionedCsvExporter.export(
+ *           cursor, dto -> toRow(dto), outDir, "payload", 100_000_000, UTF_8, true, header, 4, 5000);
+ */
+public final class PartitionedCsvExporter {
+
+    private PartitionedCsvExporter() {}
+
+    /**
+     * @param rows            出力する行（MyBatis の Cursor など）
+     * @param toColumns       1行 → CSVの列
+     * @param partitions      並列に書くパート系列の数
+     * @param batchSize       キューに積む1バッチの件数（例: 5000）
+     *
+     * @return 全パート（パーティション番号 → パート番号の順）
+     */
+    public static <T> List<RotatingCsvWriter.PartInfo> export(
+            Iterable<? extends T> rows,
+            Function<? super T, List<String>> toColumns,
+            File outDir,
+            String baseName,
+            long maxBytesPerFile,
+            Charset charset,
+            boolean writeHeaderEachPart,
+            List<String> header,
+            int partitions,
+            int batchSize
+    ) throws IOException {
+
+        Objects.requireNonNull(rows, "rows");
+        Objects.requireNonNull(toColumns, "toColumns");
+        Objects.requireNonNull(outDir, "outDir");
+        Objects.requireNonNull(baseName, "baseName");
+        Objects.requireNonNull(charset, "charset");
+        if (partitions <= 0) throw new IllegalArgumentException("partitions must be > 0");
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (maxBytesPerFile <= 0) throw new IllegalArgumentException("maxBytesPerFile must be > 0");
+        if (!outDir.exists() && !outDir.mkdirs()) {
+            throw new IOException("Failed to create dir: " + outDir.getAbsolutePath());
+        }
+
+        // 同時に抱えるバッチは partitions * 2 まで（メモリ上限）
+        BlockingQueue<List<T>> queue = new ArrayBlockingQueue<>(partitions * 2);
+        List<T> poison = Collections.emptyList();
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        ExecutorService pool = Executors.newFixedThreadPool(partitions);
+        List<Future<List<RotatingCsvWriter.PartInfo>>> futures = new ArrayList<>(partitions);
+
+        try {
+            for (int p = 0; p < partitions; p++) {
+                String partBase = baseName + "_p" + p;
+                futures.add(pool.submit(() -> writePartition(
+                        queue, poison, failed, toColumns, outDir, partBase, maxBytesPerFile, charset, writeHeaderEachPart, header)));
+            }
+
+            try {
+                List<T> batch = new ArrayList<>(batchSize);
+                for (T row : rows) {
+                    batch.add(row);
+                    if (batch.size() >= batchSize) {
+                        if (failed.get()) break;
+                        queue.put(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty() && !failed.get()) {
+                    queue.put(batch);
+                }
+            } finally {
+                // 失敗していてもワーカーを必ず終わらせる
+                for (int p = 0; p < partitions; p++) {
+                    queue.put(poison);
+                }
+            }
+
+            List<RotatingCsvWriter.PartInfo> parts = new ArrayList<>();
+            IOException error = null;
+            for (Future<List<RotatingCsvWriter.PartInfo>> f : futures) {
+                try {
+                    parts.addAll(f.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    if (error == null) error = new IOException("分割CSVの書き込みに失敗しました", cause);
+                    else error.addSuppressed(cause);
+                }
+            }
+            if (error != null) throw error;
+
+            writeManifest(new File(outDir, baseName + "_manifest.csv"), charset, parts);
+            return parts;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("分割CSVの出力中に割り込みが発生しました", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> List<RotatingCsvWriter.PartInfo> writePartition(
+            BlockingQueue<List<T>> queue,
+            List<T> poison,
+            AtomicBoolean failed,
+            Function<? super T, List<String>> toColumns,
+            File outDir,
+            String partBase,
+            long maxBytesPerFile,
+            Charset charset,
+            boolean writeHeaderEachPart,
+            List<String> header
+    ) throws Exception {
+
+        RotatingCsvWriter w = null;
+        try {
+            while (true) {
+                List<T> batch = queue.take();
+                if (batch == poison) break;
+                if (failed.get()) continue; // 他のワーカーが失敗したら読み捨てる
+
+                // 最初のバッチが来た時に開く（1件も来なければファイルを作らない）
+                if (w == null) {
+                    w = RotatingCsvWriter.open(outDir, partBase, maxBytesPerFile, charset, writeHeaderEachPart, header);
+                }
+                for (T row : batch) {
+                    w.writeRecord(toColumns.apply(row));
+                }
+            }
+        } catch (Exception | Error e) {
+            failed.set(true);
+            // 残りを読み捨てて、読み込み側が put で止まらないようにする
+            while (queue.take() != poison) {
+                // 読み捨て
+            }
+            if (w != null) {
+                try { w.close(); } catch (IOException ignore) {}
+            }
+            throw e;
+        }
+
+        if (w == null) return Collections.emptyList();
+        w.close();
+        return new ArrayList<>(w.parts());
+    }
+
+    private static void writeManifest(File manifest, Charset charset, List<RotatingCsvWriter.PartInfo> parts) throws IOException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifest), charset))) {
+            w.write("file,records,bytes\n");
+            for (RotatingCsvWriter.PartInfo pi : parts) {
+                w.write(pi.file.getName() + "," + pi.records + "," + pi.bytes + "\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * 取り込めなかった行の受け皿（BatchBisector / AbstractCsvSyncExecutor 用）。
+ * 制約違反などで1行単位まで切り分けても失敗した行が渡される。
+ */
+public interface RejectSink<R> {
+    void reject(R row, Exception cause) throws Exception;
+}
@@ -0,0 +1,161 @@
+import java.io.*;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * HTTPの送信本体用バッファ。書き込みは OutputStream として行い、閉じた後は何度でも読み直せる。
+ * - memoryLimitBytes まではメモリ（1MB単位のブロック。端数の1ブロック分は上限を超え得る）に持つ
+ * - 超えたら一時ファイルに書き出して、以降はファイルに追記する（spill）
+ * - bodyPublisher() は購読のたびに先頭から読み直すので、リトライで同じ内容を再送できる
+ *   （Content-Length も付く）
+ *
+ * 使い終わったら discard() で一時ファイルを消すこと。
+ * スレッドセーフではない（書き込み完了後の読み出しは複数スレッドから可）。
+ */
+public final class ReplayableBodyBuffer extends OutputStream {
+
+    private static final int BLOCK_BYTES = 1 << 20;
+
+    private final long memoryLimitBytes;
+    private final Path spillDir;
+
+    private final List<byte[]> blocks = new ArrayList<>();
+    private int lastBlockLen;
+    private long size;
+
+    private Path spillFile;
+    private OutputStream spillOut;
+
+    private boolean closed;
+
+    /**
+     * @param memoryLimitBytes メモリに持つ上限（超えたら spillDir に一時ファイルを作る）
+     * @param spillDir         一時ファイルの置き場（null ならOS既定の一時ディレクトリ）
+     */
+    public ReplayableBodyBuffer(long memoryLimitBytes, Path spillDir) {
+        if (memoryLimitBytes < 0) throw new IllegalArgumentException("memoryLimitBytes must be >= 0");
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.spillDir = spillDir;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("ReplayableBodyBuffer is closed");
+
+        if (spillOut == null && size + len > memoryLimitBytes) {
+            spill();
+        }
+        if (spillOut != null) {
+            spillOut.write(b, off, len);
+            size += len;
+            return;
+        }
+
+        while (len > 0) {
+            if (blocks.isEmpty() || lastBlockLen == BLOCK_BYTES) {
+                blocks.add(new byte[BLOCK_BYTES]);
+                lastBlockLen = 0;
+            }
+            byte[] block = blocks.get(blocks.size() - 1);
+            int n = Math.min(len, BLOCK_BYTES - lastBlockLen);
+            System.arraycopy(b, off, block, lastBlockLen, n);
+            lastBlockLen += n;
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+
+    /** ここまでメモリに持っていた分をファイルへ移し、以降はファイルに書く */
+    private void spill() throws IOException {
+        spillFile = spillDir != null
+                ? Files.createTempFile(spillDir, "bulk-body-", ".csv")
+                : Files.createTempFile("bulk-body-", ".csv");
+        spillOut = new BufferedOutputStream(Files.newOutputStream(spillFile), BLOCK_BYTES);
+        for (int i = 0; i < blocks.size(); i++) {
+            int n = i == blocks.size() - 1 ? lastBlockLen : blocks.get(i).length;
+            spillOut.write(blocks.get(i), 0, n);
+        }
+        blocks.clear();
+        lastBlockLen = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (spillOut != null) spillOut.flush();
+    }
+
+    /** 書き込み終了（以降 bodyPublisher() / openStream() が使える） */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (spillOut != null) {
+            spillOut.close();
+            spillOut = null;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /** 先頭から読み直すストリーム（呼ぶたびに新しいもの） */
+    public InputStream openStream() throws IOException {
+        if (!closed) throw new IllegalStateException("ReplayableBodyBuffer is not closed yet");
+
+        if (spillFile != null) {
+            return new BufferedInputStream(Files.newInputStream(spillFile), BLOCK_BYTES);
+        }
+
+        List<InputStream> parts = new ArrayList<>(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            int n = i == blocks.size() - 1 ? lastBlockLen : blocks.get(i).length;
+            parts.add(new ByteArrayInputStream(blocks.get(i), 0, n));
+        }
+        return new SequenceInputStream(Collections.enumeration(parts));
+    }
+
+    /** 購読のたびに先頭から送る BodyPublisher（Content-Length = size()） */
+    public HttpRequest.BodyPublisher bodyPublisher() {
+        if (!closed) throw new IllegalStateException("ReplayableBodyBuffer is not closed yet");
+        if (size == 0) return HttpRequest.BodyPublishers.noBody();
+
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return openStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return HttpRequest.BodyPublishers.fromPublisher(stream, size);
+    }
+
+    /** メモリと一時ファイルを解放する */
+    public void discard() {
+        blocks.clear();
+        lastBlockLen = 0;
+        try {
+            if (spillOut != null) spillOut.close();
+        } catch (IOException ignore) {
+        }
+        spillOut = null;
+        if (spillFile != null) {
+            try { Files.deleteIfExists(spillFile); } catch (IOException ignore) {}
+            spillFile = null;
+        }
+    }
+}
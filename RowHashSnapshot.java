@@ -0,0 +1,224 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 差分同期用のスナップショット（キーハッシュ → 行ハッシュ）。
+ * ファイルはキーハッシュ昇順の固定長レコードで、読み込み時は mmap して二分探索する（ヒープをほぼ使わない）。
+ *
+ * ファイル形式：
+ *   [int  magic "RHS1"]
+ *   [long 件数]
+ *   [long keyHash, long rowHash] × 件数（keyHash 昇順・重複なし）
+ *
+ * キーは64bitハッシュで持つので、別キーの衝突（≒ 2^-64）は「変更なし」と誤判定され得る。
+ */
+public final class RowHashSnapshot implements AutoCloseable {
+
+    private static final int MAGIC = 0x52485331; // "RHS1"
+    private static final int HEADER_BYTES = 12;
+    private static final int ENTRY_BYTES = 16;
+    private static final int CHUNK_SHIFT = 26;                 // 1マップ = 64M件 = 1GB
+    private static final long CHUNK_ENTRIES = 1L << CHUNK_SHIFT;
+
+    private final long count;
+    private MappedByteBuffer[] chunks;
+
+    private RowHashSnapshot(long count, MappedByteBuffer[] chunks) {
+        this.count = count;
+        this.chunks = chunks;
+    }
+
+    /** スナップショットを開く。ファイルが無ければ空（＝全件が新規扱い）。 */
+    public static RowHashSnapshot open(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return new RowHashSnapshot(0, new MappedByteBuffer[0]);
+        }
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (ch.read(header) < 0) throw new IOException("スナップショットのヘッダが壊れています: " + file);
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("スナップショットの形式が違います: " + file);
+            }
+            long count = header.getLong();
+            if (ch.size() != HEADER_BYTES + count * ENTRY_BYTES) {
+                throw new IOException("スナップショットのサイズが件数と合いません: " + file);
+            }
+
+            int chunkCount = (int) ((count + CHUNK_ENTRIES - 1) / CHUNK_ENTRIES);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long first = i * CHUNK_ENTRIES;
+                long entries = Math.min(CHUNK_ENTRIES, count - first);
+                // mmap はチャネルを閉じても有効
+                chunks[i] = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * ENTRY_BYTES, entries * ENTRY_BYTES);
+            }
+            return new RowHashSnapshot(count, chunks);
+        }
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /** keyHash の位置。無ければ -1。 */
+    public long indexOf(long keyHash) {
+        long lo = 0;
+        long hi = count - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long k = keyHashAt(mid);
+            if (k < keyHash) {
+                lo = mid + 1;
+            } else if (k > keyHash) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public long rowHashAt(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].getLong((int) (index & (CHUNK_ENTRIES - 1)) * ENTRY_BYTES + 8);
+    }
+
+    private long keyHashAt(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].getLong((int) (index & (CHUNK_ENTRIES - 1)) * ENTRY_BYTES);
+    }
+
+    /**
+     * mmap への参照を外す（実際のunmapはGC時）。
+     * ★ Windows では mmap 中のファイルを置き換えられないため、書き換え前に必ず close すること。
+     */
+    @Override
+    public void close() {
+        chunks = new MappedByteBuffer[0];
+    }
+
+    // -------------------------
+    // Builder
+    // -------------------------
+
+    /** 今回の実行分を溜めて、最後にスナップショットとして書き出す（1件16byte＋順番4byte） */
+    public static final class Builder {
+        private long[] keys = new long[1024];
+        private long[] rows = new long[1024];
+        private int size;
+
+        public void add(long keyHash, long rowHash) {
+            if (size == keys.length) {
+                int n = keys.length + (keys.length >> 1);
+                keys = Arrays.copyOf(keys, n);
+                rows = Arrays.copyOf(rows, n);
+            }
+            keys[size] = keyHash;
+            rows[size] = rowHash;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * キーハッシュ順に並べて書き出す。同じキーが複数回あれば後勝ち。
+         * 一時ファイルに書いてから置き換えるので、途中で落ちても前回のスナップショットは壊れない。
+         */
+        public void writeTo(Path file) throws IOException {
+            int[] seq = new int[size];
+            for (int i = 0; i < size; i++) seq[i] = i;
+            sort(keys, rows, seq, 0, size - 1);
+
+            // 同一キーは seq 昇順に並ぶので、末尾（＝後から追加した方）を採用
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (i + 1 < size && keys[i + 1] == keys[i]) continue;
+                keys[unique] = keys[i];
+                rows[unique] = rows[i];
+                unique++;
+            }
+
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeLong(unique);
+                for (int i = 0; i < unique; i++) {
+                    out.writeLong(keys[i]);
+                    out.writeLong(rows[i]);
+                }
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /** (key, seq) 昇順のクイックソート。keys / rows / seq を同時に入れ替える。 */
+        private static void sort(long[] keys, long[] rows, int[] seq, int lo, int hi) {
+            while (lo < hi) {
+                if (hi - lo < 16) {
+                    for (int i = lo + 1; i <= hi; i++) {
+                        for (int j = i; j > lo && less(keys, seq, j, j - 1); j--) {
+                            swap(keys, rows, seq, j, j - 1);
+                        }
+                    }
+                    return;
+                }
+
+                int mid = (lo + hi) >>> 1;
+                if (less(keys, seq, mid, lo)) swap(keys, rows, seq, mid, lo);
+                if (less(keys, seq, hi, lo)) swap(keys, rows, seq, hi, lo);
+                if (less(keys, seq, hi, mid)) swap(keys, rows, seq, hi, mid);
+                long pk = keys[mid];
+                int ps = seq[mid];
+
+                int i = lo;
+                int j = hi;
+                while (i <= j) {
+                    while (keys[i] < pk || (keys[i] == pk && seq[i] < ps)) i++;
+                    while (keys[j] > pk || (keys[j] == pk && seq[j] > ps)) j--;
+                    if (i <= j) {
+                        swap(keys, rows, seq, i, j);
+                        i++;
+                        j--;
+                    }
+                }
+
+                // 小さい方を再帰、大きい方はループ（スタック深さ O(log n)）
+                if (j - lo < hi - i) {
+                    sort(keys, rows, seq, lo, j);
+                    lo = i;
+                } else {
+                    sort(keys, rows, seq, i, hi);
+                    hi = j;
+                }
+            }
+        }
+
+        private static boolean less(long[] keys, int[] seq, int a, int b) {
+            return keys[a] < keys[b] || (keys[a] == keys[b] && seq[a] < seq[b]);
+        }
+
+        private static void swap(long[] keys, long[] rows, int[] seq, int a, int b) {
+            long k = keys[a]; keys[a] = keys[b]; keys[b] = k;
+            long r = rows[a]; rows[a] = rows[b]; rows[b] = r;
+            int s = seq[a]; seq[a] = seq[b]; seq[b] = s;
+        }
+    }
+}
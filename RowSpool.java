@@ -0,0 +1,559 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 中間ファイル（Oracle抽出 → Bulkアップロード、結果ダウンロード → DB反映）用のバイナリ行スプール。
+ * CSVのクォート解析・エスケープを毎回やり直さずに済むよう、ローカルの受け渡しはこの形式にして、
+ * CSV への変換は Salesforce との境目（toCsv / fromCsv）だけで行う。
+ *
+ * ファイル形式（数値はビッグエンディアン、varint は7bitずつの可変長）：
+ *   ヘッダー : "RSPL" / version(1byte) / flags(1byte, bit0=Deflate) / schemaHash(8byte)
+ *              / 列数(varint) / 列ごとに [名前(varint長 + UTF-8), 辞書列か(1byte)]
+ *   ブロック : 行数(int) / 元の長さ(int) / 格納長(int) / 本体（格納長 < 元の長さ なら Deflate 済み）
+ *   セル     : 通常列 = 0:null / n+1: 長さn のUTF-8
+ *              辞書列 = 0:null / 1:新しい値（辞書に追加） / 2:辞書に入れない値 / k+3: 辞書のk番目
+ *
+ * - 辞書列はステータスやレコードタイプなど値の種類が少ない列を指定する（同じ値は番号だけになる）
+ *   1列あたり maxDictEntries 種類を超えた分は辞書に入れずそのまま書く
+ * - 圧縮は Deflater.BEST_SPEED（ブロック単位。縮まなかったブロックは生のまま）
+ * - 読み込みは FileChannel の mmap 上で行い、ブロック単位で展開する
+ * - CSVと違い null と空文字を区別する（CSVへ変換すると null は空欄）
+ *
+ * 使い方：
+ *   try (RowSpool.Out w = RowSpool.Out.open(path, header, Set.of("Status__c"), true)) {
+ *       for (...) w.writeRecord(cols);
+ *   }
+ *   try (RowSpool.In r = RowSpool.In.open(path, header)) {  // 列が違えば IOException
+ *       List<String> rec;
+ *       while ((rec = r.nextRecord()) != null) { ... }
+ *   }
+ */
+public final class RowSpool {
+
+    private static final byte[] MAGIC = { 'R', 'S', 'P', 'L' };
+    private static final int VERSION = 1;
+    private static final int FLAG_DEFLATE = 1;
+
+    // MAGIC + version(1) + flags(1) + schemaHash(8) + 列数（varint、最低1バイト）
+    private static final int MIN_FILE_HEADER_BYTES = 4 + 1 + 1 + 8 + 1;
+    private static final int BLOCK_HEADER_BYTES = 12;
+    private static final int DEFAULT_BLOCK_BYTES = 1 << 20;
+    private static final int DEFAULT_MAX_DICT_ENTRIES = 4096;
+
+    // 通常列
+    private static final int TAG_NULL = 0;
+    // 辞書列
+    private static final int TAG_DICT_NEW = 1;
+    private static final int TAG_DICT_LITERAL = 2;
+    private static final int TAG_DICT_REF = 3;
+
+    private RowSpool() {}
+
+    /** 列名（順序込み）から作るスキーマのハッシュ。読み手が想定と違うファイルを掴んでいないかの確認用 */
+    public static long schemaHash(List<String> columns) {
+        long h = KeyHash.hash64(Integer.toString(columns.size()));
+        for (String c : columns) {
+            h = KeyHash.combine(h, KeyHash.hash64(c));
+        }
+        return h;
+    }
+
+    // -------------------------
+    // CSV との変換（Salesforce との境目だけで使う）
+    // -------------------------
+
+    /**
+     * CSV（1行目ヘッダー）をスプールに変換する。
+     *
+     * @return データ行数
+     */
+    public static long fromCsv(Reader csv, Path spool, Set<String> dictionaryColumns, boolean deflate) throws IOException {
+        CsvToolkit.CsvParser p = new CsvToolkit.CsvParser(csv);
+        List<String> header = p.nextRecord();
+        if (header == null) throw new IOException("CSVにヘッダーがありません");
+
+        try (Out w = Out.open(spool, header, dictionaryColumns, deflate)) {
+            List<String> rec;
+            while ((rec = p.nextRecord()) != null) {
+                w.writeRecord(rec);
+            }
+            return w.rowsWritten();
+        }
+    }
+
+    /**
+     * スプールを CSV（1行目ヘッダー、CsvToolkit.CsvWriter のエスケープ、改行LF）に変換する。
+     * Writer は flush するが閉じない。
+     *
+     * @return データ行数
+     */
+    public static long toCsv(Path spool, Writer out) throws IOException {
+        try (In r = In.open(spool, null)) {
+            CsvToolkit.CsvWriter w = new CsvToolkit.CsvWriter(out);
+            w.writeRecord(r.columns());
+            List<String> rec;
+            while ((rec = r.nextRecord()) != null) {
+                w.writeRecord(rec);
+            }
+            w.flush();
+            return r.rowsRead();
+        }
+    }
+
+    // -------------------------
+    // Out（書き込み）
+    // -------------------------
+
+    /** スプールの書き込み。スレッドセーフではない */
+    public static final class Out implements Closeable {
+        private final OutputStream out;
+        private final int columnCount;
+        private final Map<String, Integer>[] dicts; // 辞書列以外は null
+        private final int maxDictEntries;
+        private final int blockBytes;
+        private final Deflater deflater;
+
+        private byte[] block = new byte[DEFAULT_BLOCK_BYTES + 4096];
+        private int blockLen;
+        private int blockRows;
+        private byte[] packed;
+
+        private long rows;
+        private boolean closed;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Out(OutputStream out, List<String> columns, Set<String> dictionaryColumns,
+                       boolean deflate, int maxDictEntries, int blockBytes) throws IOException {
+            this.out = out;
+            this.columnCount = columns.size();
+            this.dicts = new Map[columnCount];
+            this.maxDictEntries = maxDictEntries;
+            this.blockBytes = blockBytes;
+            this.deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+
+            for (String d : dictionaryColumns) {
+                if (!columns.contains(d)) throw new IllegalArgumentException("辞書列がヘッダーにありません: " + d);
+            }
+
+            // ヘッダー
+            ByteArrayOutputStream h = new ByteArrayOutputStream();
+            h.write(MAGIC);
+            h.write(VERSION);
+            h.write(deflate ? FLAG_DEFLATE : 0);
+            long hash = schemaHash(columns);
+            for (int i = 7; i >= 0; i--) h.write((int) (hash >>> (i * 8)));
+            writeVarint(h, columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                byte[] name = columns.get(i).getBytes(StandardCharsets.UTF_8);
+                writeVarint(h, name.length);
+                h.write(name);
+                boolean dict = dictionaryColumns.contains(columns.get(i));
+                h.write(dict ? 1 : 0);
+                if (dict) dicts[i] = new HashMap<>();
+            }
+            out.write(h.toByteArray());
+        }
+
+        /** 既定値（ブロック1MB、辞書は1列4096種類まで）で開く */
+        public static Out open(Path file, List<String> columns, Set<String> dictionaryColumns, boolean deflate) throws IOException {
+            return open(file, columns, dictionaryColumns, deflate, DEFAULT_MAX_DICT_ENTRIES, DEFAULT_BLOCK_BYTES);
+        }
+
+        /**
+         * @param dictionaryColumns 辞書で書く列名（値の種類が少ない列。null なら無し）
+         * @param deflate           true ならブロックを Deflater.BEST_SPEED で圧縮する
+         * @param maxDictEntries    1列あたりの辞書の上限（超えた値は辞書に入れずに書く）
+         * @param blockBytes        1ブロックの目安（元の長さ）
+         */
+        public static Out open(Path file, List<String> columns, Set<String> dictionaryColumns,
+                                  boolean deflate, int maxDictEntries, int blockBytes) throws IOException {
+            Objects.requireNonNull(file, "file");
+            Objects.requireNonNull(columns, "columns");
+            if (columns.isEmpty()) throw new IllegalArgumentException("columns is empty");
+            if (maxDictEntries < 0) throw new IllegalArgumentException("maxDictEntries must be >= 0");
+            if (blockBytes <= 0) throw new IllegalArgumentException("blockBytes must be > 0");
+
+            OutputStream os = new BufferedOutputStream(Files.newOutputStream(file), DEFAULT_BLOCK_BYTES);
+            try {
+                return new Out(os, new ArrayList<>(columns),
+                        dictionaryColumns == null ? Collections.emptySet() : dictionaryColumns,
+                        deflate, maxDictEntries, blockBytes);
+            } catch (IOException | RuntimeException e) {
+                try { os.close(); } catch (IOException ignore) {}
+                throw e;
+            }
+        }
+
+        public void writeRecord(List<String> cols) throws IOException {
+            if (closed) throw new IOException("RowSpool.Out is closed");
+            if (cols.size() != columnCount) {
+                throw new IllegalArgumentException("列数が違います: expected=" + columnCount + ", actual=" + cols.size());
+            }
+
+            for (int i = 0; i < columnCount; i++) {
+                String v = cols.get(i);
+                Map<String, Integer> dict = dicts[i];
+                if (v == null) {
+                    putVarint(TAG_NULL);
+                } else if (dict == null) {
+                    putPlain(v);
+                } else {
+                    Integer id = dict.get(v);
+                    if (id != null) {
+                        putVarint(TAG_DICT_REF + id);
+                    } else if (dict.size() < maxDictEntries) {
+                        dict.put(v, dict.size());
+                        putTagged(TAG_DICT_NEW, v);
+                    } else {
+                        putTagged(TAG_DICT_LITERAL, v);
+                    }
+                }
+            }
+            blockRows++;
+            rows++;
+
+            if (blockLen >= blockBytes) {
+                flushBlock();
+            }
+        }
+
+        public long rowsWritten() {
+            return rows;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                flushBlock();
+            } finally {
+                if (deflater != null) deflater.end();
+                out.close();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockRows == 0) return;
+
+            byte[] body = block;
+            int storedLen = blockLen;
+            if (deflater != null) {
+                int cap = blockLen + blockLen / 1000 + 64;
+                if (packed == null || packed.length < cap) packed = new byte[cap];
+                deflater.reset();
+                deflater.setInput(block, 0, blockLen);
+                deflater.finish();
+                int n = 0;
+                while (!deflater.finished() && n < packed.length) {
+                    n += deflater.deflate(packed, n, packed.length - n);
+                }
+                // 縮まなかったら生のまま
+                if (deflater.finished() && n < blockLen) {
+                    body = packed;
+                    storedLen = n;
+                }
+            }
+
+            writeInt(out, blockRows);
+            writeInt(out, blockLen);
+            writeInt(out, storedLen);
+            out.write(body, 0, storedLen);
+
+            blockLen = 0;
+            blockRows = 0;
+        }
+
+        /** 通常列：長さ+1 と本体 */
+        private void putPlain(String v) {
+            byte[] b = v.getBytes(StandardCharsets.UTF_8);
+            putVarint(b.length + 1);
+            putBytes(b);
+        }
+
+        /** 辞書列：タグ、長さ、本体 */
+        private void putTagged(int tag, String v) {
+            byte[] b = v.getBytes(StandardCharsets.UTF_8);
+            putVarint(tag);
+            putVarint(b.length);
+            putBytes(b);
+        }
+
+        private void putBytes(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, block, blockLen, b.length);
+            blockLen += b.length;
+        }
+
+        private void putVarint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                block[blockLen++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            block[blockLen++] = (byte) v;
+        }
+
+        private void ensure(int n) {
+            if (blockLen + n > block.length) {
+                block = Arrays.copyOf(block, Math.max(block.length * 2, blockLen + n));
+            }
+        }
+    }
+
+    // -------------------------
+    // In（読み込み）
+    // -------------------------
+
+    /** スプールの読み込み（mmap）。スレッドセーフではない */
+    public static final class In implements Closeable {
+        // 一度に mmap する範囲の目安（ブロックがはみ出す時はその位置から取り直す）
+        private static final long WINDOW_BYTES = 256L << 20;
+
+        private final FileChannel ch;
+        private final long fileSize;
+        private final List<String> columns;
+        private final long schemaHash;
+        private final boolean deflate;
+        private final List<String>[] dicts; // 辞書列以外は null
+        private final Inflater inflater;
+
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long pos;
+
+        private ByteBuffer cur;       // 今のブロックの本体（mmap の slice か展開後）
+        private int curRowsLeft;
+        private byte[] inflated;
+        private byte[] scratch = new byte[256];
+
+        private long rows;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private In(FileChannel ch, List<String> expectedColumns) throws IOException {
+            this.ch = ch;
+            this.fileSize = ch.size();
+
+            if (fileSize < MIN_FILE_HEADER_BYTES) throw new IOException("RowSpool のヘッダーが壊れています");
+            mapAt(0, Math.min(fileSize, WINDOW_BYTES));
+            ByteBuffer b = window.duplicate();
+            for (byte m : MAGIC) {
+                if (b.get() != m) throw new IOException("RowSpool ファイルではありません");
+            }
+            int version = b.get() & 0xFF;
+            if (version != VERSION) throw new IOException("未対応の RowSpool バージョンです: " + version);
+            this.deflate = (b.get() & FLAG_DEFLATE) != 0;
+            this.schemaHash = b.getLong();
+
+            // 途中で切れたヘッダーは BufferUnderflowException 等になるので IOException にそろえる
+            List<String> cols;
+            try {
+                int n = readVarint(b);
+                // 1列あたり最低2バイト（名前の長さ + 辞書フラグ）なので、ファイルより多い列数は壊れている
+                if (n < 0 || n > fileSize) throw new IllegalStateException("列数が不正です: " + n);
+                cols = new ArrayList<>(n);
+                this.dicts = new List[n];
+                for (int i = 0; i < n; i++) {
+                    cols.add(readString(b, readVarint(b)));
+                    if (b.get() != 0) dicts[i] = new ArrayList<>();
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("RowSpool のヘッダーが壊れています", e);
+            }
+            this.columns = Collections.unmodifiableList(cols);
+            this.pos = b.position();
+            this.inflater = deflate ? new Inflater() : null;
+
+            if (RowSpool.schemaHash(columns) != schemaHash) {
+                throw new IOException("RowSpool のスキーマハッシュが一致しません（ファイルが壊れています）");
+            }
+            if (expectedColumns != null && RowSpool.schemaHash(expectedColumns) != schemaHash) {
+                throw new IOException("RowSpool の列が想定と違います: expected=" + expectedColumns + ", actual=" + columns);
+            }
+        }
+
+        /**
+         * @param expectedColumns 想定する列（null なら確認しない）。違えば IOException
+         */
+        public static In open(Path file, List<String> expectedColumns) throws IOException {
+            FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                return new In(ch, expectedColumns);
+            } catch (IOException | RuntimeException e) {
+                try { ch.close(); } catch (IOException ignore) {}
+                throw e;
+            }
+        }
+
+        public List<String> columns() {
+            return columns;
+        }
+
+        public long schemaHash() {
+            return schemaHash;
+        }
+
+        public long rowsRead() {
+            return rows;
+        }
+
+        /** 次の行。終わりなら null（CsvToolkit.CsvParser.nextRecord と同じ使い方） */
+        public List<String> nextRecord() throws IOException {
+            String[] row = nextRow(null);
+            return row == null ? null : Arrays.asList(row);
+        }
+
+        /**
+         * 次の行を reuse（列数が合えば使い回す）に入れて返す。終わりなら null。
+         */
+        public String[] nextRow(String[] reuse) throws IOException {
+            if (curRowsLeft == 0 && !nextBlock()) return null;
+
+            String[] row = (reuse != null && reuse.length == columns.size()) ? reuse : new String[columns.size()];
+            ByteBuffer b = cur;
+            try {
+                for (int i = 0; i < row.length; i++) {
+                    List<String> dict = dicts[i];
+                    int tag = readVarint(b);
+                    if (tag == TAG_NULL) {
+                        row[i] = null;
+                    } else if (dict == null) {
+                        row[i] = readString(b, tag - 1);
+                    } else if (tag == TAG_DICT_NEW) {
+                        String v = readString(b, readVarint(b));
+                        dict.add(v);
+                        row[i] = v;
+                    } else if (tag == TAG_DICT_LITERAL) {
+                        row[i] = readString(b, readVarint(b));
+                    } else {
+                        row[i] = dict.get(tag - TAG_DICT_REF);
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("RowSpool のブロックが壊れています", e);
+            }
+            curRowsLeft--;
+            rows++;
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inflater != null) inflater.end();
+            window = null;
+            cur = null;
+            ch.close();
+        }
+
+        private boolean nextBlock() throws IOException {
+            while (true) {
+                if (pos == fileSize) return false;
+                if (fileSize - pos < BLOCK_HEADER_BYTES) throw new IOException("RowSpool の末尾が欠けています");
+
+                ByteBuffer w = slice(pos, BLOCK_HEADER_BYTES);
+                int blockRows = w.getInt();
+                int rawLen = w.getInt();
+                int storedLen = w.getInt();
+                if (blockRows < 0 || rawLen < 0 || storedLen < 0 || storedLen > rawLen
+                        || pos + BLOCK_HEADER_BYTES + storedLen > fileSize) {
+                    throw new IOException("RowSpool のブロックヘッダーが壊れています（位置 " + pos + "）");
+                }
+
+                ByteBuffer body = slice(pos + BLOCK_HEADER_BYTES, storedLen);
+                pos += BLOCK_HEADER_BYTES + storedLen;
+
+                if (storedLen < rawLen) {
+                    if (inflater == null) throw new IOException("圧縮なしのスプールに圧縮ブロックがあります");
+                    if (inflated == null || inflated.length < rawLen) inflated = new byte[rawLen];
+                    inflater.reset();
+                    inflater.setInput(body);
+                    try {
+                        int n = 0;
+                        while (n < rawLen && !inflater.finished()) {
+                            int k = inflater.inflate(inflated, n, rawLen - n);
+                            if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                            n += k;
+                        }
+                        if (n != rawLen) throw new IOException("RowSpool のブロックを展開できません（位置 " + pos + "）");
+                    } catch (DataFormatException e) {
+                        throw new IOException("RowSpool のブロックを展開できません", e);
+                    }
+                    body = ByteBuffer.wrap(inflated, 0, rawLen).slice();
+                }
+
+                if (blockRows == 0) continue;
+                cur = body;
+                curRowsLeft = blockRows;
+                return true;
+            }
+        }
+
+        /** ファイルの [start, start+len) を読むバッファ（今の mmap に入っていなければ取り直す） */
+        private ByteBuffer slice(long start, int len) throws IOException {
+            if (window == null || start < windowStart || start + len > windowStart + window.capacity()) {
+                mapAt(start, Math.min(fileSize - start, Math.max(WINDOW_BYTES, len)));
+            }
+            ByteBuffer b = window.duplicate();
+            b.position((int) (start - windowStart));
+            b.limit((int) (start - windowStart) + len);
+            return b.slice().order(ByteOrder.BIG_ENDIAN);
+        }
+
+        private void mapAt(long start, long len) throws IOException {
+            window = ch.map(FileChannel.MapMode.READ_ONLY, start, len);
+            windowStart = start;
+        }
+
+        private String readString(ByteBuffer b, int len) {
+            if (b.hasArray()) {
+                int p = b.position();
+                String s = new String(b.array(), b.arrayOffset() + p, len, StandardCharsets.UTF_8);
+                b.position(p + len);
+                return s;
+            }
+            if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+            b.get(scratch, 0, len);
+            return new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+    }
+
+    // -------------------------
+    // varint / int
+    // -------------------------
+
+    private static void writeVarint(OutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarint(ByteBuffer b) {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int x = b.get();
+            v |= (x & 0x7F) << shift;
+            if ((x & 0x80) == 0) return v;
+        }
+        throw new IllegalStateException("varint が長すぎます");
+    }
+
+    private static void writeInt(OutputStream out, int v) throws IOException {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+}
@@ -0,0 +1,181 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * formatForSalesforce の date / datetime_utc を、DateTimeFormatter を通さずに数字を直接書く版。
+ * - date         : yyyy-MM-dd（ISO_LOCAL_DATE と同じ）
+ * - datetime_utc : yyyy-MM-dd'T'HH:mm:ss.SSSZ（"yyyy-MM-dd'T'HH:mm:ss.SSSX" + UTC と同じ）
+ *
+ * 直前に書いた日の "yyyy-MM-dd" を覚えておき、同じ日が続く間は時刻部分だけ計算する。
+ * 年が 1〜9999 の外（符号や5桁以上になる）は従来の DateTimeFormatter に任せるので、出力は従来とバイト単位で同じ。
+ *
+ * スレッドセーフ（キャッシュは不変オブジェクトの差し替えのみ）。
+ */
+public final class SfDateTimeWriter {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final DateTimeFormatter DATETIME_UTC = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX")
+            .withZone(ZoneOffset.UTC);
+
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    // 0001-01-01 / 9999-12-31 の epochDay
+    private static final long MIN_FAST_EPOCH_DAY = LocalDate.of(1, 1, 1).toEpochDay();
+    private static final long MAX_FAST_EPOCH_DAY = LocalDate.of(9999, 12, 31).toEpochDay();
+
+    /** 直前の日（epochDay と "yyyy-MM-dd"） */
+    private static final class DayPrefix {
+        final long epochDay;
+        final char[] chars;
+
+        DayPrefix(long epochDay, char[] chars) {
+            this.epochDay = epochDay;
+            this.chars = chars;
+        }
+    }
+
+    private volatile DayPrefix lastDay = new DayPrefix(Long.MIN_VALUE, new char[0]);
+
+    /**
+     * date 形式で追記する。
+     *
+     * @return 対応する型（LocalDate / java.sql.Date / java.util.Date）なら true。false なら何も書いていない
+     */
+    public boolean appendDate(StringBuilder sb, Object v) {
+        if (v instanceof LocalDate) {
+            LocalDate ld = (LocalDate) v;
+            int y = ld.getYear();
+            if (y < 1 || y > 9999) {
+                sb.append(DATE.format(ld));
+            } else {
+                appendYmd(sb, y, ld.getMonthValue(), ld.getDayOfMonth());
+            }
+            return true;
+        }
+        if (v instanceof java.sql.Date) {
+            return appendDate(sb, ((java.sql.Date) v).toLocalDate());
+        }
+        if (v instanceof java.util.Date) {
+            if (v instanceof java.sql.Time) {
+                // 従来どおり（toInstant が例外になる）
+                ((java.util.Date) v).toInstant();
+            }
+            long epochDay = Math.floorDiv(((java.util.Date) v).getTime(), MILLIS_PER_DAY);
+            if (epochDay < MIN_FAST_EPOCH_DAY || epochDay > MAX_FAST_EPOCH_DAY) {
+                sb.append(LocalDate.ofEpochDay(epochDay).format(DATE));
+            } else {
+                sb.append(dayPrefix(epochDay));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * datetime_utc 形式で追記する。
+     *
+     * @return 対応する型（Instant / OffsetDateTime / ZonedDateTime / LocalDateTime / java.util.Date）なら true
+     */
+    public boolean appendDateTimeUtc(StringBuilder sb, Object v) {
+        long epochSecond;
+        int nano;
+
+        if (v instanceof Instant) {
+            Instant i = (Instant) v;
+            epochSecond = i.getEpochSecond();
+            nano = i.getNano();
+        } else if (v instanceof OffsetDateTime) {
+            OffsetDateTime odt = (OffsetDateTime) v;
+            epochSecond = odt.toEpochSecond();
+            nano = odt.getNano();
+        } else if (v instanceof ZonedDateTime) {
+            ZonedDateTime zdt = (ZonedDateTime) v;
+            epochSecond = zdt.toEpochSecond();
+            nano = zdt.getNano();
+        } else if (v instanceof LocalDateTime) {
+            LocalDateTime ldt = (LocalDateTime) v;
+            epochSecond = ldt.toEpochSecond(ZoneOffset.UTC);
+            nano = ldt.getNano();
+        } else if (v instanceof java.util.Date) {
+            if (v instanceof java.sql.Date || v instanceof java.sql.Time || v instanceof java.sql.Timestamp) {
+                // 従来どおり toInstant に任せる（sql.Date/Time は例外になる、Timestamp はナノ秒を持つ）
+                return appendDateTimeUtc(sb, ((java.util.Date) v).toInstant());
+            }
+            long ms = ((java.util.Date) v).getTime();
+            epochSecond = Math.floorDiv(ms, 1000L);
+            nano = (int) Math.floorMod(ms, 1000L) * 1_000_000;
+        } else {
+            return false;
+        }
+
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        if (epochDay < MIN_FAST_EPOCH_DAY || epochDay > MAX_FAST_EPOCH_DAY) {
+            sb.append(DATETIME_UTC.format(Instant.ofEpochSecond(epochSecond, nano)));
+            return true;
+        }
+
+        int secOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        int millis = nano / 1_000_000;
+
+        sb.append(dayPrefix(epochDay)).append('T');
+        append2(sb, secOfDay / 3600);
+        sb.append(':');
+        append2(sb, (secOfDay / 60) % 60);
+        sb.append(':');
+        append2(sb, secOfDay % 60);
+        sb.append('.');
+        sb.append((char) ('0' + millis / 100));
+        sb.append((char) ('0' + (millis / 10) % 10));
+        sb.append((char) ('0' + millis % 10));
+        sb.append('Z');
+        return true;
+    }
+
+    /** date 形式の文字列。対応しない型なら null */
+    public String formatDate(Object v) {
+        StringBuilder sb = new StringBuilder(10);
+        return appendDate(sb, v) ? sb.toString() : null;
+    }
+
+    /** datetime_utc 形式の文字列。対応しない型なら null */
+    public String formatDateTimeUtc(Object v) {
+        StringBuilder sb = new StringBuilder(24);
+        return appendDateTimeUtc(sb, v) ? sb.toString() : null;
+    }
+
+    private char[] dayPrefix(long epochDay) {
+        DayPrefix d = lastDay;
+        if (d.epochDay == epochDay) {
+            return d.chars;
+        }
+        LocalDate ld = LocalDate.ofEpochDay(epochDay);
+        StringBuilder sb = new StringBuilder(10);
+        appendYmd(sb, ld.getYear(), ld.getMonthValue(), ld.getDayOfMonth());
+        char[] chars = new char[10];
+        sb.getChars(0, 10, chars, 0);
+        lastDay = new DayPrefix(epochDay, chars);
+        return chars;
+    }
+
+    private static void appendYmd(StringBuilder sb, int y, int m, int d) {
+        sb.append((char) ('0' + y / 1000));
+        sb.append((char) ('0' + (y / 100) % 10));
+        sb.append((char) ('0' + (y / 10) % 10));
+        sb.append((char) ('0' + y % 10));
+        sb.append('-');
+        append2(sb, m);
+        sb.append('-');
+        append2(sb, d);
+    }
+
+    private static void append2(StringBuilder sb, int v) {
+        sb.append((char) ('0' + v / 10));
+        sb.append((char) ('0' + v % 10));
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * RotatingCsvWriter のパートをファイルに書かず、そのままアップロードに回す PartSink。
+ * - パートは ReplayableBodyBuffer（メモリ、超えたら一時ファイル）に書く
+ * - パートを閉じたらすぐ別スレッドでアップロードし、その間に次のパートを書く
+ * - 同時に抱えるパートは maxBufferedParts まで（書き中＋送信待ち＋送信中。超えたら openPart で待つ）
+ * - アップロード後（成功・失敗とも）バッファは捨てる
+ *
+ * 1パート = 1 Bulk ジョブなので、ジョブ作成・アップロード・UploadComplete は uploader 側で行う。
+ *
+ * 使い方：
+ *   BulkV2Uploader http = new BulkV2Uploader();
+ *   try (StreamingBulkUpload up = new StreamingBulkUpload((partNo, body) -> {
+ *            String jobId = createJob(...);
+ *            http.uploadCsvWithRetry(base, "v60.0", token, jobId, body, 8);
+ *            closeJob(jobId);
+ *        }, 2, 3, 64L << 20, null);
+ *        RotatingCsvWriter w = RotatingCsvWriter.openStreaming(up, 100_000_000, UTF_8, true, header)) {
+ *       try {
+ *           for (...) w.writeRecord(row);
+ *       } catch (Exception e) {
+ *           w.abort(); // 書きかけのパートは送らない（送信待ちのパートも捨てる）
+ *           throw e;
+ *       }
+ *   }
+ *   ★ try-with-resources は逆順に閉じる（writer → up）ので、最後のパートも送ってから終わる
+ *   ★ 書き込み側の失敗時に abort しないと、close で書きかけのパートが完了扱いになり送られてしまう
+ *
+ * abort（partAborted）の後は、まだ始まっていないアップロードはせずにバッファを捨てる
+ * （送信中のパートは完了まで待つ。それらは書き終えたパートなので中身は揃っている）。
+ */
+public final class StreamingBulkUpload implements RotatingCsvWriter.PartSink, AutoCloseable {
+
+    /** 1パート分のアップロード（body は close 済み。何度でも bodyPublisher() できる） */
+    public interface PartUploader {
+        void upload(int partNo, ReplayableBodyBuffer body) throws Exception;
+    }
+
+    private final PartUploader uploader;
+    private final long memoryBytesPerPart;
+    private final Path spillDir;
+
+    private final ExecutorService pool;
+    private final Semaphore bufferedParts;
+    private final Map<Integer, ReplayableBodyBuffer> writing = new ConcurrentHashMap<>();
+    private final List<Future<?>> uploads = new ArrayList<>();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private volatile boolean aborted;
+
+    /**
+     * @param uploader           1パート分のアップロード処理
+     * @param uploadThreads      同時にアップロードするパート数
+     * @param maxBufferedParts   同時に抱えるパート数の上限（uploadThreads + 1 以上推奨）
+     * @param memoryBytesPerPart 1パートあたりメモリに持つ上限（超えたら spillDir に一時ファイル）
+     * @param spillDir           一時ファイルの置き場（null ならOS既定）
+     */
+    public StreamingBulkUpload(
+            PartUploader uploader,
+            int uploadThreads,
+            int maxBufferedParts,
+            long memoryBytesPerPart,
+            Path spillDir) {
+        if (uploadThreads <= 0) throw new IllegalArgumentException("uploadThreads must be > 0");
+        if (maxBufferedParts <= 0) throw new IllegalArgumentException("maxBufferedParts must be > 0");
+
+        this.uploader = Objects.requireNonNull(uploader, "uploader");
+        this.memoryBytesPerPart = memoryBytesPerPart;
+        this.spillDir = spillDir;
+        this.pool = Executors.newFixedThreadPool(uploadThreads);
+        this.bufferedParts = new Semaphore(maxBufferedParts);
+    }
+
+    @Override
+    public OutputStream openPart(int partNo) throws IOException {
+        throwIfFailed();
+        try {
+            bufferedParts.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("アップロード待ち中に割り込みが発生しました", e);
+        }
+        throwIfFailed();
+
+        ReplayableBodyBuffer buf = new ReplayableBodyBuffer(memoryBytesPerPart, spillDir);
+        writing.put(partNo, buf);
+        return buf;
+    }
+
+    @Override
+    public void partCompleted(int partNo, long records, long bytes) throws IOException {
+        ReplayableBodyBuffer buf = writing.remove(partNo);
+        if (buf == null) throw new IllegalStateException("未知のパートです: " + partNo);
+
+        uploads.add(pool.submit(() -> {
+            try {
+                if (failure.get() == null && !aborted) {
+                    uploader.upload(partNo, buf);
+                }
+            } catch (Exception e) {
+                failure.compareAndSet(null, new IOException("パート " + partNo + " のアップロードに失敗しました", e));
+            } finally {
+                buf.discard();
+                bufferedParts.release();
+            }
+        }));
+    }
+
+    /** 書き込み側が失敗した。書きかけのパートを捨て、送信待ちのパートも送らない */
+    @Override
+    public void partAborted(int partNo) {
+        aborted = true;
+        ReplayableBodyBuffer buf = writing.remove(partNo);
+        if (buf != null) {
+            buf.discard();
+            bufferedParts.release();
+        }
+    }
+
+    /** 全パートのアップロードを待つ。どれかが失敗していたら最初の失敗を投げる */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Future<?> f : uploads) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    failure.compareAndSet(null, new IOException("アップロードに失敗しました", e.getCause()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("アップロード待ち中に割り込みが発生しました", e);
+        } finally {
+            pool.shutdownNow();
+            for (ReplayableBodyBuffer buf : writing.values()) {
+                buf.discard();
+            }
+            writing.clear();
+        }
+        throwIfFailed();
+    }
+
+    private void throwIfFailed() throws IOException {
+        Exception e = failure.get();
+        if (e instanceof IOException) throw (IOException) e;
+        if (e != null) throw new IOException(e);
+    }
+}
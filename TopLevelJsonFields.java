@@ -0,0 +1,171 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JSONオブジェクトの「直下のキー」だけを、木を作らずに先頭から読んで取り出す。
+ * ジョブ状態（{"id":..,"state":..,"numberRecordsProcessed":..}）のような平たいレスポンスを
+ * 何度もポーリングする時に、SalesforceResponseParser.pick（全体を JsonNode にする）の代わりに使う。
+ *
+ * - 返す値は pick と同じく文字列（数値・true/false は書かれた表記のまま、null と欠けたキーは null）
+ * - ネストしたオブジェクト・配列の値は読み飛ばす（取りたいならこちらではなく pick を使う）
+ * - 欲しいキーが全部そろった時点で読むのをやめる
+ * - JSONオブジェクトでなければ（HTMLのエラーページ等）先頭200文字付きの RuntimeException
+ */
+public final class TopLevelJsonFields {
+
+    private TopLevelJsonFields() {}
+
+    public static Map<String, String> pick(String json, String... keys) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (String k : keys) out.put(k, null);
+        if (json == null) throw invalid(null, 0);
+
+        Scanner s = new Scanner(json);
+        try {
+            s.skipWs();
+            s.expect('{');
+            s.skipWs();
+            if (s.peek() == '}') return out;
+
+            int found = 0;
+            while (true) {
+                s.skipWs();
+                String key = s.readString();
+                s.skipWs();
+                s.expect(':');
+                s.skipWs();
+
+                if (out.containsKey(key)) {
+                    out.put(key, s.readScalarOrSkip());
+                    if (++found == keys.length) return out;
+                } else {
+                    s.skipValue();
+                }
+
+                s.skipWs();
+                char c = s.next();
+                if (c == '}') return out;
+                if (c != ',') throw invalid(json, s.pos - 1);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw invalid(json, json.length());
+        }
+    }
+
+    private static RuntimeException invalid(String json, int pos) {
+        String head = json == null ? "null" : json.substring(0, Math.min(json.length(), 200));
+        return new RuntimeException("Salesforce response is not valid JSON (pos " + pos + "). head=" + head);
+    }
+
+    private static final class Scanner {
+        final String s;
+        int pos;
+
+        Scanner(String s) {
+            this.s = s;
+        }
+
+        char peek() {
+            return s.charAt(pos);
+        }
+
+        char next() {
+            return s.charAt(pos++);
+        }
+
+        void expect(char c) {
+            if (next() != c) throw invalid(s, pos - 1);
+        }
+
+        void skipWs() {
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return;
+                pos++;
+            }
+        }
+
+        /** 文字列・数値・true/false/null はその値、オブジェクト・配列は読み飛ばして null */
+        String readScalarOrSkip() {
+            char c = peek();
+            if (c == '"') return readString();
+            if (c == '{' || c == '[') {
+                skipValue();
+                return null;
+            }
+            String lit = readLiteral();
+            return lit.equals("null") ? null : lit;
+        }
+
+        String readString() {
+            expect('"');
+            StringBuilder sb = null;
+            int start = pos;
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb == null ? s.substring(start, pos - 1) : sb.toString();
+                }
+                if (c != '\\') {
+                    if (sb != null) sb.append(c);
+                    continue;
+                }
+                if (sb == null) sb = new StringBuilder(s.substring(start, pos - 1));
+                char e = next();
+                switch (e) {
+                    case '"': sb.append('"'); break;
+                    case '\\': sb.append('\\'); break;
+                    case '/': sb.append('/'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        throw invalid(s, pos - 1);
+                }
+            }
+        }
+
+        String readLiteral() {
+            int start = pos;
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r') break;
+                pos++;
+            }
+            if (pos == start) throw invalid(s, pos);
+            return s.substring(start, pos);
+        }
+
+        /** 値を1つ読み飛ばす（ネストは括弧の深さで数える） */
+        void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                readString();
+                return;
+            }
+            if (c != '{' && c != '[') {
+                readLiteral();
+                return;
+            }
+            int depth = 0;
+            while (true) {
+                c = peek();
+                if (c == '"') {
+                    readString();
+                    continue;
+                }
+                pos++;
+                if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') {
+                    if (--depth == 0) return;
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,9 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,16 +46,316 @@ public final class BulkSuccessCsvToDbUpdater {
         if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
         if (commitEveryBatches <= 0) throw new IllegalArgumentException("commitEveryBatches must be > 0");
 
+        return update(conn, successCsvFile, csvCharset, externalKeyColName, updateSql, batchSize, commitEveryBatches, null, null, null);
+    }
+
+    /**
+     * updateSfIdsFromSuccessCsv に「DBに無いキーの事前除外」を足した版。
+     * Salesforce 側で作られたレコードなど、ローカルに無いキーの行は UPDATE しても 0 件なので、
+     * addBatch する前に knownKeys で弾いて rowsUnknownKey に数える（空行の rowsSkipped とは別）。
+     *
+     * knownKeys が Bloom フィルタの場合、偽陽性の分だけは従来どおり UPDATE が飛ぶ（結果は変わらない）。
+     *
+     * @param knownKeys 突合先テーブルのキー集合（KnownKeyFilter.load で事前に作る）
+     */
+    public static Summary updateSfIdsFromSuccessCsv(
+            Connection conn,
+            File successCsvFile,
+            Charset csvCharset,
+            String externalKeyColName,
+            String updateSql,
+            int batchSize,
+            int commitEveryBatches,
+            KnownKeyFilter knownKeys
+    ) throws Exception {
+
+        Objects.requireNonNull(conn, "conn");
+        Objects.requireNonNull(successCsvFile, "successCsvFile");
+        Objects.requireNonNull(csvCharset, "csvCharset");
+        Objects.requireNonNull(externalKeyColName, "externalKeyColName");
+        Objects.requireNonNull(updateSql, "updateSql");
+        Objects.requireNonNull(knownKeys, "knownKeys");
+
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (commitEveryBatches <= 0) throw new IllegalArgumentException("commitEveryBatches must be > 0");
+
+        return update(conn, successCsvFile, csvCharset, externalKeyColName, updateSql, batchSize, commitEveryBatches, null, knownKeys, null);
+    }
+
+    /**
+     * updateSfIdsFromSuccessCsv に「悪い行の切り分け」を足した版。
+     * 制約違反などで executeBatch が失敗しても全体を rollback せず、BatchBisector でバッチを半分ずつ再実行して
+     * 失敗した行だけを rejects に書き出し、残りは通常どおり反映する（rowsRejected に数える）。
+     *
+     * rejects に渡る行は [sfId, externalKey]。
+     *
+     * @param rejects    リジェクト行の出力先（例: CsvRejectSink）
+     * @param maxRejects これを超えたら全体を失敗扱いにして rollback（例: 1000）
+     */
+    public static Summary updateSfIdsFromSuccessCsv(
+            Connection conn,
+            File successCsvFile,
+            Charset csvCharset,
+            String externalKeyColName,
+            String updateSql,
+            int batchSize,
+            int commitEveryBatches,
+            RejectSink<? super String[]> rejects,
+            long maxRejects
+    ) throws Exception {
+
+        Objects.requireNonNull(conn, "conn");
+        Objects.requireNonNull(successCsvFile, "successCsvFile");
+        Objects.requireNonNull(csvCharset, "csvCharset");
+        Objects.requireNonNull(externalKeyColName, "externalKeyColName");
+        Objects.requireNonNull(updateSql, "updateSql");
+        Objects.requireNonNull(rejects, "rejects");
+
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (commitEveryBatches <= 0) throw new IllegalArgumentException("commitEveryBatches must be > 0");
+
+        BatchBisector<String[]> bisector = new BatchBisector<>(
+                (ps, row) -> {
+                    ps.setString(1, row[0]);
+                    ps.setString(2, row[1]);
+                },
+                rejects,
+                maxRejects);
+
+        return update(conn, successCsvFile, csvCharset, externalKeyColName, updateSql, batchSize, commitEveryBatches, null, null, bisector);
+    }
+
+    /**
+     * updateSfIdsFromSuccessCsv に「キー重複の除去（後勝ち）」を足した版。
+     * 再投入したBulkジョブの成功CSVのように同じキーが何度も出る場合、
+     * 最後に出た行だけを更新し、それより前の行は rowsSkipped に数えてスキップする。
+     *
+     * 1パス目でキー → 最終行番号 をオフヒープの表（OffHeapLastRowIndex）に作り、
+     * 2パス目で「最終行の行」だけを更新に回す（ファイルを2回読む）。
+     *
+     * @param expectedKeys ユニークキー数の見積もり（オフヒープ表のサイズ。超えてもヒープ退避で正しく動く）
+     */
+    public static Summary updateSfIdsFromSuccessCsvDedup(
+            Connection conn,
+            File successCsvFile,
+            Charset csvCharset,
+            String externalKeyColName,
+            String updateSql,
+            int batchSize,
+            int commitEveryBatches,
+            long expectedKeys
+    ) throws Exception {
+
+        Objects.requireNonNull(conn, "conn");
+        Objects.requireNonNull(successCsvFile, "successCsvFile");
+        Objects.requireNonNull(csvCharset, "csvCharset");
+        Objects.requireNonNull(externalKeyColName, "externalKeyColName");
+        Objects.requireNonNull(updateSql, "updateSql");
+
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (commitEveryBatches <= 0) throw new IllegalArgumentException("commitEveryBatches must be > 0");
+        if (expectedKeys <= 0) throw new IllegalArgumentException("expectedKeys must be > 0");
+
+        try (OffHeapLastRowIndex lastRows = buildLastRowIndex(successCsvFile, csvCharset, externalKeyColName, expectedKeys)) {
+            return update(conn, successCsvFile, csvCharset, externalKeyColName, updateSql, batchSize, commitEveryBatches,
+                    (rowNo, externalKey) -> lastRows.lastRowOf(externalKey) == rowNo, null, null);
+        }
+    }
+
+    /** 成功結果CSVを先頭から開く口。接続が切れた時に開き直すので、呼ぶたびに新しいストリームを返すこと */
+    public interface SuccessCsvSource {
+        InputStream open() throws IOException;
+    }
+
+    /** commit のたびに呼ばれる。recordsCommitted（先頭から数えて commit 済みのレコード数）が次の再開位置 */
+    public interface CommitListener {
+        void committed(long recordsCommitted, Summary soFar) throws Exception;
+    }
+
+    /**
+     * updateSfIdsFromSuccessCsv のストリーム版。成功結果CSVをファイルに保存せず、
+     * ダウンロード中のストリーム（BulkApiAsyncClient.openResults）から直接読んでバッチ更新する。
+     * 読むのは sf__Id とキー列だけ（他の列は文字列にしない）。
+     *
+     * commit は commitEveryBatches ごと。その時点で読み終わっているレコード数を onCommit に渡すので、
+     * 呼び出し側はこれを保存しておけば、プロセスごと落ちても startRecord に渡して続きから再開できる。
+     * 途中で接続が切れた（読み込みで IOException）場合は、未 commit 分を rollback して source を開き直し、
+     * commit 済みのレコード数だけ読み飛ばして続ける（最大 maxReconnects 回）。
+     * Bulk の結果CSVは途中から取れないので、読み飛ばす分も受信はし直す（DB更新はしない）。
+     * DB側の失敗（SQLException 等）と onCommit が投げた例外は、開き直さずにそのまま投げる。
+     *
+     * @param source      成功結果CSVのストリームを開く口（例: () -> api.openResults(jobId, "successfulResults").join()）
+     * @param startRecord 先頭から読み飛ばすレコード数（前回の recordsCommitted。初回は 0）
+     * @param maxReconnects 接続が切れた時に開き直す最大回数
+     * @param onCommit    commit のたびの通知（不要なら null）
+     */
+    public static StreamSummary updateSfIdsFromSuccessStream(
+            Connection conn,
+            SuccessCsvSource source,
+            Charset csvCharset,
+            String externalKeyColName,
+            String updateSql,
+            int batchSize,
+            int commitEveryBatches,
+            long startRecord,
+            int maxReconnects,
+            CommitListener onCommit
+    ) throws Exception {
+
+        Objects.requireNonNull(conn, "conn");
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(csvCharset, "csvCharset");
+        Objects.requireNonNull(externalKeyColName, "externalKeyColName");
+        Objects.requireNonNull(updateSql, "updateSql");
+
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (commitEveryBatches <= 0) throw new IllegalArgumentException("commitEveryBatches must be > 0");
+        if (startRecord < 0) throw new IllegalArgumentException("startRecord must be >= 0");
+        if (maxReconnects < 0) throw new IllegalArgumentException("maxReconnects must be >= 0");
+
+        Summary[] done = { new Summary(0, 0, 0, 0) };   // 前の接続までに commit した分
+        Summary[] committed = { null };                // 今の接続で最後に commit した時点の集計
+        long[] position = { startRecord };             // commit 済みのレコード数
+        int reconnects = 0;
+
+        while (true) {
+            committed[0] = null;
+            long skip = position[0];
+            try (Reader reader = new BufferedReader(new InputStreamReader(source.open(), csvCharset))) {
+                Summary last = update(conn, reader, externalKeyColName, updateSql, batchSize, commitEveryBatches,
+                        null, null, null, skip, (records, soFar) -> {
+                            position[0] = records;
+                            committed[0] = soFar;
+                            if (onCommit == null) return;
+                            try {
+                                onCommit.committed(records, plus(done[0], soFar));
+                            } catch (Exception e) {
+                                // 読み込みの IOException と区別する（再開位置の保存失敗などで開き直さない）
+                                throw new CommitListenerFailed(e);
+                            }
+                        });
+                Summary total = plus(done[0], last);
+                return new StreamSummary(total, startRecord, Math.max(position[0], skip), reconnects);
+            } catch (CommitListenerFailed e) {
+                throw (Exception) e.getCause();
+            } catch (IOException e) {
+                if (reconnects >= maxReconnects) throw e;
+                reconnects++;
+                if (committed[0] != null) done[0] = plus(done[0], committed[0]);
+            }
+        }
+    }
+
+    /** onCommit が投げた例外の包み（updateSfIdsFromSuccessStream の中だけで使う） */
+    private static final class CommitListenerFailed extends Exception {
+        CommitListenerFailed(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private static Summary plus(Summary a, Summary b) {
+        return new Summary(
+                a.rowsRead + b.rowsRead,
+                a.rowsApplied + b.rowsApplied,
+                a.rowsSkipped + b.rowsSkipped,
+                a.rowsUnknownKey + b.rowsUnknownKey,
+                a.rowsRejected + b.rowsRejected,
+                a.batchesExecuted + b.batchesExecuted);
+    }
+
+    /** 1パス目：有効行（sf__Id とキーが両方ある行）について キー → 最終行番号 を作る */
+    private static OffHeapLastRowIndex buildLastRowIndex(
+            File successCsvFile,
+            Charset csvCharset,
+            String externalKeyColName,
+            long expectedKeys
+    ) throws IOException {
+
+        OffHeapLastRowIndex index = new OffHeapLastRowIndex(expectedKeys);
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(successCsvFile), csvCharset))) {
+            CsvToolkit.CsvParser parser = new CsvToolkit.CsvParser(reader);
+
+            List<String> header = parser.nextRecord();
+            if (header == null) return index;
+
+            int[] cols = resolveColumns(header, externalKeyColName);
+
+            long rowNo = 0;
+            List<String> rec;
+            while ((rec = parser.nextRecord()) != null) {
+                rowNo++;
+
+                String sfId = get(rec, cols[0]);
+                String externalKey = get(rec, cols[1]);
+                if (isBlank(sfId) || isBlank(externalKey)) continue;
+
+                index.put(externalKey, rowNo);
+            }
+        } catch (IOException | RuntimeException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    /** 行をDB更新に回すかどうかの事前判定。false なら rowsSkipped に数える。 */
+    private interface RowGate {
+        boolean admit(long rowNo, String externalKey);
+    }
+
+    private static final int[] NO_COLUMNS = new int[0];
+
+    private static Summary update(
+            Connection conn,
+            File successCsvFile,
+            Charset csvCharset,
+            String externalKeyColName,
+            String updateSql,
+            int batchSize,
+            int commitEveryBatches,
+            RowGate gate,
+            KnownKeyFilter knownKeys,
+            BatchBisector<String[]> bisector
+    ) throws Exception {
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(successCsvFile), csvCharset))) {
+            return update(conn, reader, externalKeyColName, updateSql, batchSize, commitEveryBatches,
+                    gate, knownKeys, bisector, 0, null);
+        }
+    }
+
+    /**
+     * 更新の本体（Reader から読む）。
+     * 先頭から skipRecords 件のレコードは読み飛ばす（前回 commit 済みの分。rowsRead 等には数えない）。
+     * onCommit には commit のたびに「先頭から数えて commit 済みのレコード数」と、この呼び出しでの集計を渡す。
+     * 例外時は rollback するので、再開は最後に onCommit に渡した位置から。
+     */
+    private static Summary update(
+            Connection conn,
+            Reader reader,
+            String externalKeyColName,
+            String updateSql,
+            int batchSize,
+            int commitEveryBatches,
+            RowGate gate,
+            KnownKeyFilter knownKeys,
+            BatchBisector<String[]> bisector,
+            long skipRecords,
+            CommitListener onCommit
+    ) throws Exception {
+
         boolean prevAutoCommit = conn.getAutoCommit();
         conn.setAutoCommit(false);
 
+        long recordNo = 0; // 先頭からのレコード番号（読み飛ばした分も含む）
         long rowsRead = 0;
         long rowsApplied = 0;
         long rowsSkipped = 0;
+        long rowsUnknownKey = 0;
         long batchesExecuted = 0;
 
-        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(successCsvFile), csvCharset));
-             PreparedStatement ps = conn.prepareStatement(updateSql)) {
+        try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
 
             CsvToolkit.CsvParser parser = new CsvToolkit.CsvParser(reader);
 
@@ -60,41 +363,55 @@ public final class BulkSuccessCsvToDbUpdater {
             List<String> header = parser.nextRecord();
             if (header == null) return new Summary(0, 0, 0, 0);
 
-            Map<String, Integer> idx = indexHeader(header);
-
-            Integer sfIdIdx = idx.get("sf__Id");
-            Integer extIdx = idx.get(externalKeyColName);
+            // sf__Id とキー列だけを取り出す（他の列は文字列にしない）
+            int[] cols = resolveColumns(header, externalKeyColName);
+            String[] row = new String[2];
 
-            if (sfIdIdx == null) {
-                throw new IllegalArgumentException("成功結果CSVに sf__Id がありません。ヘッダー=" + header);
-            }
-            if (extIdx == null) {
-                throw new IllegalArgumentException("成功結果CSVにキー列がありません: " + externalKeyColName + " ヘッダー=" + header);
+            // commit 済みの分を読み飛ばす
+            while (recordNo < skipRecords && parser.nextRecord(NO_COLUMNS, row)) {
+                recordNo++;
             }
 
             int batchCount = 0;
             int batchesSinceCommit = 0;
 
-            List<String> rec;
-            while ((rec = parser.nextRecord()) != null) {
+            // 切り分けありの場合は、失敗時に再実行できるようにバッチの行を手元に残す
+            List<String[]> pending = bisector != null ? new ArrayList<>(batchSize) : null;
+
+            while (parser.nextRecord(cols, row)) {
+                recordNo++;
                 rowsRead++;
 
-                String sfId = get(rec, sfIdIdx);
-                String externalKey = get(rec, extIdx);
+                String sfId = row[0];
+                String externalKey = row[1];
 
                 if (isBlank(sfId) || isBlank(externalKey)) {
                     rowsSkipped++;
                     continue;
                 }
 
+                if (knownKeys != null && !knownKeys.mightContain(externalKey)) {
+                    rowsUnknownKey++;
+                    continue;
+                }
+
+                if (gate != null && !gate.admit(recordNo, externalKey)) {
+                    rowsSkipped++;
+                    continue;
+                }
+
                 // ★ SQLのプレースホルダ順：sf_id -> external_key の順を想定
-                ps.setString(1, sfId);
-                ps.setString(2, externalKey);
-                ps.addBatch();
+                if (pending != null) {
+                    pending.add(new String[] { sfId, externalKey });
+                } else {
+                    ps.setString(1, sfId);
+                    ps.setString(2, externalKey);
+                    ps.addBatch();
+                }
 
                 batchCount++;
                 if (batchCount >= batchSize) {
-                    int affected = sum(ps.executeBatch());
+                    int affected = flush(conn, ps, bisector, pending);
                     rowsApplied += affected;
                     batchesExecuted++;
                     batchesSinceCommit++;
@@ -104,13 +421,17 @@ public final class BulkSuccessCsvToDbUpdater {
                     if (batchesSinceCommit >= commitEveryBatches) {
                         conn.commit();
                         batchesSinceCommit = 0;
+                        if (onCommit != null) {
+                            long rowsRejected = bisector != null ? bisector.rejectedCount() : 0;
+                            onCommit.committed(recordNo, new Summary(rowsRead, rowsApplied, rowsSkipped, rowsUnknownKey, rowsRejected, batchesExecuted));
+                        }
                     }
                 }
             }
 
             // 残り flush
             if (batchCount > 0) {
-                int affected = sum(ps.executeBatch());
+                int affected = flush(conn, ps, bisector, pending);
                 rowsApplied += affected;
                 batchesExecuted++;
                 batchesSinceCommit++;
@@ -118,6 +439,152 @@ public final class BulkSuccessCsvToDbUpdater {
 
             conn.commit();
 
+            long rowsRejected = bisector != null ? bisector.rejectedCount() : 0;
+            Summary summary = new Summary(rowsRead, rowsApplied, rowsSkipped, rowsUnknownKey, rowsRejected, batchesExecuted);
+            if (onCommit != null) onCommit.committed(recordNo, summary);
+            return summary;
+
+        } catch (Exception e) {
+            try { conn.rollback(); } catch (Exception ignore) {}
+            throw e;
+        } finally {
+            try { conn.setAutoCommit(prevAutoCommit); } catch (Exception ignore) {}
+        }
+    }
+
+    private static int flush(Connection conn, PreparedStatement ps, BatchBisector<String[]> bisector, List<String[]> pending) throws Exception {
+        if (bisector == null) {
+            return sum(ps.executeBatch());
+        }
+        int affected = bisector.execute(conn, ps, pending);
+        pending.clear();
+        return affected;
+    }
+
+    /**
+     * ステージング表経由の set-based 更新版（大量件数向け）。
+     * 1) (sf_id, key) を stagingInsertSql で staging表へバッチinsert
+     * 2) applyEveryRows 件ごとに applySql を1回だけ実行して本表へ反映
+     * 3) clearSql で staging表を空にして commit
+     *
+     * 本表の更新は「1行ずつのUPDATE」ではなく「N行に1回の結合UPDATE/MERGE」になる。
+     * rowsApplied は applySql の executeUpdate() の戻り値の合計なので正確
+     * （executeBatch の SUCCESS_NO_INFO(-2) に左右されない）。
+     *
+     * SQL例（Oracle。staging表は GTT を想定）
+     *   CREATE GLOBAL TEMPORARY TABLE SF_ID_STAGE (SF_ID VARCHAR2(18), EXT_ID VARCHAR2(255)) ON COMMIT DELETE ROWS
+     *   stagingInsertSql: INSERT INTO SF_ID_STAGE (SF_ID, EXT_ID) VALUES (?, ?)
+     *   applySql        : MERGE INTO MY_TABLE t USING SF_ID_STAGE s ON (t.EXT_ID = s.EXT_ID)
+     *                     WHEN MATCHED THEN UPDATE SET t.SF_ID = s.SF_ID
+     *   clearSql        : DELETE FROM SF_ID_STAGE
+     * PostgreSQL なら applySql は UPDATE MY_TABLE t SET SF_ID = s.SF_ID FROM SF_ID_STAGE s WHERE t.EXT_ID = s.EXT_ID
+     *
+     * ★ 同じキーが1回の反映単位に2回入ると MERGE がエラー(ORA-30926)になるので、
+     *   再投入ジョブの成功CSVなどキー重複があり得る場合は applySql 側で重複を潰すこと。
+     *
+     * @param stagingInsertSql staging表へのINSERT（プレースホルダ順：sf_id -> external_key）
+     * @param applySql         staging表 → 本表 への set-based 更新
+     * @param clearSql         staging表を空にするSQL
+     * @param batchSize        staging表へのinsertのバッチサイズ（例: 1000）
+     * @param applyEveryRows   何件ごとに applySql + commit するか（例: 100000）
+     */
+    public static Summary updateSfIdsViaStaging(
+            Connection conn,
+            File successCsvFile,
+            Charset csvCharset,
+            String externalKeyColName,
+            String stagingInsertSql,
+            String applySql,
+            String clearSql,
+            int batchSize,
+            int applyEveryRows
+    ) throws Exception {
+
+        Objects.requireNonNull(conn, "conn");
+        Objects.requireNonNull(successCsvFile, "successCsvFile");
+        Objects.requireNonNull(csvCharset, "csvCharset");
+        Objects.requireNonNull(externalKeyColName, "externalKeyColName");
+        Objects.requireNonNull(stagingInsertSql, "stagingInsertSql");
+        Objects.requireNonNull(applySql, "applySql");
+        Objects.requireNonNull(clearSql, "clearSql");
+
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (applyEveryRows <= 0) throw new IllegalArgumentException("applyEveryRows must be > 0");
+
+        boolean prevAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        long rowsRead = 0;
+        long rowsApplied = 0;
+        long rowsSkipped = 0;
+        long batchesExecuted = 0;
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(successCsvFile), csvCharset));
+             PreparedStatement stage = conn.prepareStatement(stagingInsertSql);
+             PreparedStatement apply = conn.prepareStatement(applySql);
+             PreparedStatement clear = conn.prepareStatement(clearSql)) {
+
+            CsvToolkit.CsvParser parser = new CsvToolkit.CsvParser(reader);
+
+            List<String> header = parser.nextRecord();
+            if (header == null) return new Summary(0, 0, 0, 0);
+
+            int[] cols = resolveColumns(header, externalKeyColName);
+            int sfIdIdx = cols[0];
+            int extIdx = cols[1];
+
+            // 前回の異常終了で残っていても混ざらないように空にしておく
+            clear.executeUpdate();
+
+            int batchCount = 0;
+            long staged = 0;
+
+            List<String> rec;
+            while ((rec = parser.nextRecord()) != null) {
+                rowsRead++;
+
+                String sfId = get(rec, sfIdIdx);
+                String externalKey = get(rec, extIdx);
+
+                if (isBlank(sfId) || isBlank(externalKey)) {
+                    rowsSkipped++;
+                    continue;
+                }
+
+                stage.setString(1, sfId);
+                stage.setString(2, externalKey);
+                stage.addBatch();
+                batchCount++;
+                staged++;
+
+                if (batchCount >= batchSize) {
+                    stage.executeBatch();
+                    batchesExecuted++;
+                    batchCount = 0;
+                }
+
+                if (staged >= applyEveryRows) {
+                    if (batchCount > 0) {
+                        stage.executeBatch();
+                        batchesExecuted++;
+                        batchCount = 0;
+                    }
+                    rowsApplied += applyStaged(conn, apply, clear);
+                    staged = 0;
+                }
+            }
+
+            // 残り flush
+            if (batchCount > 0) {
+                stage.executeBatch();
+                batchesExecuted++;
+            }
+            if (staged > 0) {
+                rowsApplied += applyStaged(conn, apply, clear);
+            }
+
+            conn.commit();
+
             return new Summary(rowsRead, rowsApplied, rowsSkipped, batchesExecuted);
 
         } catch (Exception e) {
@@ -128,6 +595,156 @@ public final class BulkSuccessCsvToDbUpdater {
         }
     }
 
+    /**
+     * バッチサイズとcommit間隔を実測から自動調整する版。
+     * 固定の batchSize / commitEveryBatches の代わりに、
+     * 「1トランザクションの長さ（最初の未commit行 → commit完了まで）の目標」と
+     * 「未commit行数の上限」を渡す。
+     *
+     * - executeBatch が遅い（目標の1/4超）→ バッチを半分に / 速い（1/16未満）→ 1.5倍に
+     * - トランザクションが目標を超えた → commit間隔(行数)を半分に / 目標の半分未満 → 1.25倍に
+     * - 行数に達していなくても、目標時間に達したら commit する
+     * 判断の内訳は AdaptiveSummary で返す。
+     *
+     * @param targetCommitMillis  1トランザクションの目標時間（例: 2000）
+     * @param maxUncommittedRows  未commit行数の上限（例: 50000）
+     */
+    public static AdaptiveSummary updateSfIdsFromSuccessCsvAdaptive(
+            Connection conn,
+            File successCsvFile,
+            Charset csvCharset,
+            String externalKeyColName,
+            String updateSql,
+            long targetCommitMillis,
+            int maxUncommittedRows
+    ) throws Exception {
+
+        Objects.requireNonNull(conn, "conn");
+        Objects.requireNonNull(successCsvFile, "successCsvFile");
+        Objects.requireNonNull(csvCharset, "csvCharset");
+        Objects.requireNonNull(externalKeyColName, "externalKeyColName");
+        Objects.requireNonNull(updateSql, "updateSql");
+
+        if (targetCommitMillis <= 0) throw new IllegalArgumentException("targetCommitMillis must be > 0");
+        if (maxUncommittedRows <= 0) throw new IllegalArgumentException("maxUncommittedRows must be > 0");
+
+        AdaptiveBatchController ctl = new AdaptiveBatchController(targetCommitMillis, maxUncommittedRows);
+
+        boolean prevAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        long rowsRead = 0;
+        long rowsApplied = 0;
+        long rowsSkipped = 0;
+        long batchesExecuted = 0;
+
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(successCsvFile), csvCharset));
+             PreparedStatement ps = conn.prepareStatement(updateSql)) {
+
+            CsvToolkit.CsvParser parser = new CsvToolkit.CsvParser(reader);
+
+            List<String> header = parser.nextRecord();
+            if (header == null) return ctl.summarize(new Summary(0, 0, 0, 0));
+
+            int[] cols = resolveColumns(header, externalKeyColName);
+            int sfIdIdx = cols[0];
+            int extIdx = cols[1];
+
+            int batchCount = 0;
+            long uncommitted = 0;
+            long txStart = 0;
+
+            List<String> rec;
+            while ((rec = parser.nextRecord()) != null) {
+                rowsRead++;
+
+                String sfId = get(rec, sfIdIdx);
+                String externalKey = get(rec, extIdx);
+
+                if (isBlank(sfId) || isBlank(externalKey)) {
+                    rowsSkipped++;
+                    continue;
+                }
+
+                if (uncommitted == 0 && batchCount == 0) {
+                    txStart = System.nanoTime();
+                }
+
+                ps.setString(1, sfId);
+                ps.setString(2, externalKey);
+                ps.addBatch();
+
+                batchCount++;
+                // 未commit件数の上限に届いたら、バッチの途中でも実行して commit する（上限を超えない）
+                boolean atCap = uncommitted + batchCount >= ctl.maxUncommittedRows();
+                if (batchCount >= ctl.batchSize() || atCap) {
+                    long t0 = System.nanoTime();
+                    rowsApplied += sum(ps.executeBatch());
+                    ctl.onBatch(batchCount, System.nanoTime() - t0);
+                    batchesExecuted++;
+                    uncommitted += batchCount;
+                    batchCount = 0;
+
+                    if (atCap || ctl.shouldCommit(uncommitted, System.nanoTime() - txStart)) {
+                        long c0 = System.nanoTime();
+                        conn.commit();
+                        long now = System.nanoTime();
+                        ctl.onCommit(uncommitted, now - c0, now - txStart);
+                        uncommitted = 0;
+                    }
+                }
+            }
+
+            // 残り flush
+            if (batchCount > 0) {
+                long t0 = System.nanoTime();
+                rowsApplied += sum(ps.executeBatch());
+                ctl.onBatch(batchCount, System.nanoTime() - t0);
+                batchesExecuted++;
+                uncommitted += batchCount;
+            }
+
+            long c0 = System.nanoTime();
+            conn.commit();
+            if (uncommitted > 0) {
+                long now = System.nanoTime();
+                ctl.onCommit(uncommitted, now - c0, now - txStart);
+            }
+
+            return ctl.summarize(new Summary(rowsRead, rowsApplied, rowsSkipped, batchesExecuted));
+
+        } catch (Exception e) {
+            try { conn.rollback(); } catch (Exception ignore) {}
+            throw e;
+        } finally {
+            try { conn.setAutoCommit(prevAutoCommit); } catch (Exception ignore) {}
+        }
+    }
+
+    /** staging表の内容を本表へ反映 → staging表を空に → commit。戻り値は本表の更新件数。 */
+    private static int applyStaged(Connection conn, PreparedStatement apply, PreparedStatement clear) throws Exception {
+        int applied = apply.executeUpdate();
+        clear.executeUpdate();
+        conn.commit();
+        return Math.max(0, applied);
+    }
+
+    /** ヘッダーから {sf__Id の位置, キー列の位置} を引く。無ければ例外。 */
+    static int[] resolveColumns(List<String> header, String externalKeyColName) {
+        Map<String, Integer> idx = indexHeader(header);
+
+        Integer sfIdIdx = idx.get("sf__Id");
+        Integer extIdx = idx.get(externalKeyColName);
+
+        if (sfIdIdx == null) {
+            throw new IllegalArgumentException("成功結果CSVに sf__Id がありません。ヘッダー=" + header);
+        }
+        if (extIdx == null) {
+            throw new IllegalArgumentException("成功結果CSVにキー列がありません: " + externalKeyColName + " ヘッダー=" + header);
+        }
+        return new int[] { sfIdIdx, extIdx };
+    }
+
     private static Map<String, Integer> indexHeader(List<String> header) {
         Map<String, Integer> idx = new HashMap<>();
         for (int i = 0; i < header.size(); i++) {
@@ -136,16 +753,16 @@ public final class BulkSuccessCsvToDbUpdater {
         return idx;
     }
 
-    private static String get(List<String> rec, int i) {
+    static String get(List<String> rec, int i) {
         if (i < 0 || i >= rec.size()) return "";
         return rec.get(i);
     }
 
-    private static boolean isBlank(String s) {
+    static boolean isBlank(String s) {
         return s == null || s.trim().isEmpty();
     }
 
-    private static int sum(int[] batchResult) {
+    static int sum(int[] batchResult) {
         int total = 0;
         if (batchResult == null) return 0;
         for (int r : batchResult) {
@@ -156,16 +773,134 @@ public final class BulkSuccessCsvToDbUpdater {
         return total;
     }
 
-    public static final class Summary {
+    /**
+     * 実測ベースのバッチ/commit制御（updateSfIdsFromSuccessCsvAdaptive 用）。
+     * 時間は全て nanoTime の差分（ナノ秒）で受け取る。
+     */
+    static final class AdaptiveBatchController {
+        static final int MIN_BATCH = 50;
+        static final int MAX_BATCH = 10_000;
+        static final int INITIAL_BATCH = 500;
+        static final int MAX_DECISIONS = 50;
+
+        private final long targetNanos;
+        private final int maxUncommittedRows;
+
+        private int batchSize;
+        private long commitEveryRows;
+
+        private long batchNanosTotal;
+        private long batches;
+        private long commits;
+        private long maxCommitNanos;
+        private long maxTxNanos;
+        private long batchGrows;
+        private long batchShrinks;
+        private long intervalGrows;
+        private long intervalShrinks;
+        private final ArrayDeque<String> decisions = new ArrayDeque<>();
+
+        AdaptiveBatchController(long targetCommitMillis, int maxUncommittedRows) {
+            this.targetNanos = targetCommitMillis * 1_000_000L;
+            this.maxUncommittedRows = maxUncommittedRows;
+            this.batchSize = Math.max(1, Math.min(INITIAL_BATCH, maxUncommittedRows));
+            this.commitEveryRows = Math.min(maxUncommittedRows, (long) batchSize * 10);
+        }
+
+        int batchSize() {
+            return batchSize;
+        }
+
+        int maxUncommittedRows() {
+            return maxUncommittedRows;
+        }
+
+        boolean shouldCommit(long uncommittedRows, long txNanos) {
+            return uncommittedRows >= commitEveryRows || txNanos >= targetNanos;
+        }
+
+        void onBatch(int rows, long nanos) {
+            batches++;
+            batchNanosTotal += nanos;
+
+            if (nanos > targetNanos / 4 && batchSize > MIN_BATCH) {
+                int prev = batchSize;
+                batchSize = Math.max(MIN_BATCH, batchSize / 2);
+                batchShrinks++;
+                decide("batch " + prev + "->" + batchSize + " (executeBatch " + millis(nanos) + "ms)");
+            } else if (nanos < targetNanos / 16 && rows >= batchSize && batchSize < upperBatch()) {
+                int prev = batchSize;
+                batchSize = Math.min(upperBatch(), batchSize + Math.max(1, batchSize / 2));
+                batchGrows++;
+                decide("batch " + prev + "->" + batchSize + " (executeBatch " + millis(nanos) + "ms)");
+            }
+        }
+
+        void onCommit(long rows, long commitNanos, long txNanos) {
+            commits++;
+            maxCommitNanos = Math.max(maxCommitNanos, commitNanos);
+            maxTxNanos = Math.max(maxTxNanos, txNanos);
+
+            if (txNanos > targetNanos && commitEveryRows > batchSize) {
+                long prev = commitEveryRows;
+                commitEveryRows = Math.max(batchSize, commitEveryRows / 2);
+                intervalShrinks++;
+                decide("commitEvery " + prev + "->" + commitEveryRows + " rows (tx " + millis(txNanos)
+                        + "ms, commit " + millis(commitNanos) + "ms)");
+            } else if (txNanos < targetNanos / 2 && rows >= commitEveryRows && commitEveryRows < maxUncommittedRows) {
+                long prev = commitEveryRows;
+                commitEveryRows = Math.min(maxUncommittedRows, commitEveryRows + Math.max(batchSize, commitEveryRows / 4));
+                intervalGrows++;
+                decide("commitEvery " + prev + "->" + commitEveryRows + " rows (tx " + millis(txNanos)
+                        + "ms, commit " + millis(commitNanos) + "ms)");
+            }
+        }
+
+        AdaptiveSummary summarize(Summary base) {
+            return new AdaptiveSummary(
+                    base.rowsRead, base.rowsApplied, base.rowsSkipped, base.batchesExecuted,
+                    commits, batchSize, commitEveryRows,
+                    batches == 0 ? 0 : millis(batchNanosTotal) / (double) batches,
+                    millis(maxCommitNanos), millis(maxTxNanos),
+                    batchGrows, batchShrinks, intervalGrows, intervalShrinks,
+                    new ArrayList<>(decisions));
+        }
+
+        private int upperBatch() {
+            return Math.min(MAX_BATCH, maxUncommittedRows);
+        }
+
+        private void decide(String s) {
+            if (decisions.size() >= MAX_DECISIONS) decisions.removeFirst();
+            decisions.addLast(s);
+        }
+
+        private static long millis(long nanos) {
+            return nanos / 1_000_000L;
+        }
+    }
+
+    public static class Summary {
         public final long rowsRead;
         public final long rowsApplied;
         public final long rowsSkipped;
+        /** DBに無いキーとして事前に除外した行数（KnownKeyFilter 使用時のみ） */
+        public final long rowsUnknownKey;
+        /** 制約違反などで切り分けの末にリジェクトした行数（RejectSink 使用時のみ） */
+        public final long rowsRejected;
         public final long batchesExecuted;
 
         public Summary(long rowsRead, long rowsApplied, long rowsSkipped, long batchesExecuted) {
+            this(rowsRead, rowsApplied, rowsSkipped, 0, 0, batchesExecuted);
+        }
+
+        public Summary(long rowsRead, long rowsApplied, long rowsSkipped, long rowsUnknownKey, long rowsRejected,
+                       long batchesExecuted) {
             this.rowsRead = rowsRead;
             this.rowsApplied = rowsApplied;
             this.rowsSkipped = rowsSkipped;
+            this.rowsUnknownKey = rowsUnknownKey;
+            this.rowsRejected = rowsRejected;
             this.batchesExecuted = batchesExecuted;
         }
 
@@ -174,9 +909,93 @@ public final class BulkSuccessCsvToDbUpdater {
             return "Summary{rowsRead=" + rowsRead +
                     ", rowsApplied=" + rowsApplied +
                     ", rowsSkipped=" + rowsSkipped +
+                    ", rowsUnknownKey=" + rowsUnknownKey +
+                    ", rowsRejected=" + rowsRejected +
                     ", batchesExecuted=" + batchesExecuted + "}";
         }
     }
+
+    /** updateSfIdsFromSuccessStream の結果。Summary に再開位置と開き直した回数を足したもの。 */
+    public static final class StreamSummary extends Summary {
+        /** 読み飛ばしたレコード数（呼び出し時の startRecord） */
+        public final long startRecord;
+        /** 先頭から数えて commit 済みのレコード数（正常終了なら全件） */
+        public final long recordsCommitted;
+        public final int reconnects;
+
+        public StreamSummary(Summary s, long startRecord, long recordsCommitted, int reconnects) {
+            super(s.rowsRead, s.rowsApplied, s.rowsSkipped, s.rowsUnknownKey, s.rowsRejected, s.batchesExecuted);
+            this.startRecord = startRecord;
+            this.recordsCommitted = recordsCommitted;
+            this.reconnects = reconnects;
+        }
+
+        @Override
+        public String toString() {
+            return "StreamSummary{rowsRead=" + rowsRead +
+                    ", rowsApplied=" + rowsApplied +
+                    ", rowsSkipped=" + rowsSkipped +
+                    ", rowsUnknownKey=" + rowsUnknownKey +
+                    ", rowsRejected=" + rowsRejected +
+                    ", batchesExecuted=" + batchesExecuted +
+                    ", startRecord=" + startRecord +
+                    ", recordsCommitted=" + recordsCommitted +
+                    ", reconnects=" + reconnects + "}";
+        }
+    }
+
+    /** updateSfIdsFromSuccessCsvAdaptive の結果。Summary に制御の判断内訳を足したもの。 */
+    public static final class AdaptiveSummary extends Summary {
+        public final long commits;
+        public final int finalBatchSize;
+        public final long finalCommitEveryRows;
+        public final double avgBatchMillis;
+        public final long maxCommitMillis;
+        public final long maxTransactionMillis;
+        public final long batchGrows;
+        public final long batchShrinks;
+        public final long intervalGrows;
+        public final long intervalShrinks;
+        /** 直近の判断ログ（最大 50 件） */
+        public final List<String> decisions;
+
+        public AdaptiveSummary(long rowsRead, long rowsApplied, long rowsSkipped, long batchesExecuted,
+                               long commits, int finalBatchSize, long finalCommitEveryRows,
+                               double avgBatchMillis, long maxCommitMillis, long maxTransactionMillis,
+                               long batchGrows, long batchShrinks, long intervalGrows, long intervalShrinks,
+                               List<String> decisions) {
+            super(rowsRead, rowsApplied, rowsSkipped, batchesExecuted);
+            this.commits = commits;
+            this.finalBatchSize = finalBatchSize;
+            this.finalCommitEveryRows = finalCommitEveryRows;
+            this.avgBatchMillis = avgBatchMillis;
+            this.maxCommitMillis = maxCommitMillis;
+            this.maxTransactionMillis = maxTransactionMillis;
+            this.batchGrows = batchGrows;
+            this.batchShrinks = batchShrinks;
+            this.intervalGrows = intervalGrows;
+            this.intervalShrinks = intervalShrinks;
+            this.decisions = Collections.unmodifiableList(decisions);
+        }
+
+        @Override
+        public String toString() {
+            return "AdaptiveSummary{rowsRead=" + rowsRead +
+                    ", rowsApplied=" + rowsApplied +
+                    ", rowsSkipped=" + rowsSkipped +
+                    ", batchesExecuted=" + batchesExecuted +
+                    ", commits=" + commits +
+                    ", finalBatchSize=" + finalBatchSize +
+                    ", finalCommitEveryRows=" + finalCommitEveryRows +
+                    ", avgBatchMillis=" + String.format("%.1f", avgBatchMillis) +
+                    ", maxCommitMillis=" + maxCommitMillis +
+                    ", maxTransactionMillis=" + maxTransactionMillis +
+                    ", batchGrows=" + batchGrows +
+                    ", batchShrinks=" + batchShrinks +
+                    ", intervalGrows=" + intervalGrows +
+                    ", intervalShrinks=" + intervalShrinks + "}";
+        }
+    }
 }
 
 
@@ -192,6 +192,7 @@ public final class CsvToolkit {
     public static final class CsvParser {
         private final Reader r;
         private int pushed = -2; // -2: none, -1: EOF, else: char
+        private final StringBuilder projected = new StringBuilder(); // nextRecord(int[], String[]) 用
 
         public CsvParser(Reader r) {
             this.r = Objects.requireNonNull(r, "reader");
@@ -260,6 +261,77 @@ public final class CsvToolkit {
             }
         }
 
+        /**
+         * 次のレコードのうち cols の列だけを読む（out[i] = 列 cols[i] の値。列が足りなければ ""）。
+         * それ以外の列は文字列を作らずに読み飛ばすので、欲しい列が少ない時は nextRecord より軽い。
+         * cols が空なら、レコードの区切りだけを見て1件読み飛ばす。EOFなら false。
+         */
+        public boolean nextRecord(int[] cols, String[] out) throws IOException {
+            Arrays.fill(out, 0, cols.length, "");
+            StringBuilder cell = projected;
+            cell.setLength(0);
+            int col = 0;
+            int slot = slotOf(cols, 0);
+            boolean inQuotes = false;
+            boolean anyRead = false;
+
+            while (true) {
+                int ch = read();
+                if (ch == -1) {
+                    if (!anyRead) return false;
+                    if (slot >= 0) out[slot] = cell.toString();
+                    return true;
+                }
+
+                anyRead = true;
+
+                if (inQuotes) {
+                    if (ch == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            if (slot >= 0) cell.append('"');
+                        } else {
+                            inQuotes = false;
+                            unread(next);
+                        }
+                    } else if (slot >= 0) {
+                        cell.append((char) ch);
+                    }
+                    continue;
+                }
+
+                if (ch == '"') {
+                    inQuotes = true;
+                    continue;
+                }
+
+                if (ch == ',') {
+                    if (slot >= 0) out[slot] = cell.toString();
+                    cell.setLength(0);
+                    slot = slotOf(cols, ++col);
+                    continue;
+                }
+
+                if (ch == '\r' || ch == '\n') {
+                    if (ch == '\r') {
+                        int next = read();
+                        if (next != '\n') unread(next);
+                    }
+                    if (slot >= 0) out[slot] = cell.toString();
+                    return true;
+                }
+
+                if (slot >= 0) cell.append((char) ch);
+            }
+        }
+
+        private static int slotOf(int[] cols, int col) {
+            for (int i = 0; i < cols.length; i++) {
+                if (cols[i] == col) return i;
+            }
+            return -1;
+        }
+
         private int read() throws IOException {
             if (pushed != -2) {
                 int c = pushed;
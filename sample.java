@@ -384,4 +384,19 @@ try (java.io.Reader reader = java.nio.file.Files.newBufferedReader(
     );
 }
 
-----------------------------
\ No newline at end of file
+----------------------------
+// Bulk query の結果を locator ページごとに先読みしながら登録する（getQueryResult の置き換え）
+BulkApiAsyncClient api = new BulkApiAsyncClient(instanceUrl, "v60.0", accessToken);
+BulkQueryResultFetcher fetcher = new BulkQueryResultFetcher(api, 50_000, 3);
+
+RetailStoreSyncExecutor executor =
+        new RetailStoreSyncExecutor(repository);
+
+fetcher.fetchInto(jobId, executor);
+
+----------------------------
+
+// 成功CSVを保存せず、successfulResults を読みながらDBへ反映する（落ちたら recordsCommitted から再開）
+BulkSuccessCsvToDbUpdater.StreamSummary summary = SfIdApplyRunner.applyFromJob(ctx, api, jobId, 0);
+
+----------------------------
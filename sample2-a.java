@@ -1,3 +1,5 @@
+private static final SfDateTimeWriter DATE_TIMES = new SfDateTimeWriter();
+
 private static String formatForSalesforce(Object v, String format) {
     if (v == null) return "";
 
@@ -8,48 +10,20 @@ private static String formatForSalesforce(Object v, String format) {
     switch (format) {
 
         case "date": { // yyyy-MM-dd
-            if (v instanceof java.time.LocalDate) {
-                return ((java.time.LocalDate) v)
-                        .format(DateTimeFormatter.ISO_LOCAL_DATE);
-            }
-
-            if (v instanceof java.sql.Date) {
-                return ((java.sql.Date) v)
-                        .toLocalDate()
-                        .format(DateTimeFormatter.ISO_LOCAL_DATE);
-            }
-
-            if (v instanceof java.util.Date) {
-                Instant i = ((java.util.Date) v).toInstant();
-                return LocalDateTime
-                        .ofInstant(i, ZoneOffset.UTC)
-                        .toLocalDate()
-                        .format(DateTimeFormatter.ISO_LOCAL_DATE);
+            // ISO_LOCAL_DATE と同じ出力（LocalDate / java.sql.Date / java.util.Date(UTC)）
+            String s = DATE_TIMES.formatDate(v);
+            if (s != null) {
+                return s;
             }
 
             return String.valueOf(v);
         }
 
         case "datetime_utc": { // yyyy-MM-ddTHH:mm:ss.SSSZ
-            Instant instant = null;
-
-            if (v instanceof Instant) {
-                instant = (Instant) v;
-            } else if (v instanceof OffsetDateTime) {
-                instant = ((OffsetDateTime) v).toInstant();
-            } else if (v instanceof ZonedDateTime) {
-                instant = ((ZonedDateTime) v).toInstant();
-            } else if (v instanceof LocalDateTime) {
-                instant = ((LocalDateTime) v).toInstant(ZoneOffset.UTC);
-            } else if (v instanceof java.util.Date) {
-                instant = ((java.util.Date) v).toInstant();
-            }
-
-            if (instant != null) {
-                DateTimeFormatter fmt =
-                        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX")
-                                .withZone(ZoneOffset.UTC);
-                return fmt.format(instant);
+            // ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX").withZone(UTC) と同じ出力
+            String s = DATE_TIMES.formatDateTimeUtc(v);
+            if (s != null) {
+                return s;
             }
 
             return String.valueOf(v);
@@ -260,17 +260,8 @@ public class SalesforceCsvSyncService {
             InputStream csvStream,
             Connection conn) throws Exception {
 
-        Properties props = new Properties();
-
-        try (InputStream in =
-                getClass().getResourceAsStream(
-                        "/sf-mapping.properties")) {
-
-            props.load(in);
-        }
-
         SfCsvMapper<RetailStoreDto> mapper =
-                new SfCsvMapper<>(props, RetailStoreDto.class);
+                new SfCsvMapper<>(loadMapping(), RetailStoreDto.class);
 
         RetailStoreRepository repo =
                 new RetailStoreRepository();
@@ -309,6 +300,88 @@ public class SalesforceCsvSyncService {
             repo.merge(conn, dto);
         }
     }
+
+    /**
+     * sync のバッチ版。chunkSize 件ずつ溜めて、1チャンク = 1回のMERGE（またはexecuteBatch）で反映する。
+     * 1件ごとの repo.merge と違い、往復回数が「件数」ではなく「チャンク数」になる。
+     * commit はしない（sync と同じく呼び出し側）。
+     *
+     * @return ドライバが返した更新件数の合計
+     */
+    public long syncBatched(
+            InputStream csvStream,
+            Connection conn,
+            BatchedMergeUpserter<RetailStoreDto> upserter,
+            int chunkSize) throws Exception {
+
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be > 0");
+
+        SfCsvMapper<RetailStoreDto> mapper =
+                new SfCsvMapper<>(loadMapping(), RetailStoreDto.class);
+
+        BufferedReader br = new BufferedReader(
+                new InputStreamReader(
+                        csvStream,
+                        StandardCharsets.UTF_8));
+
+        String headerLine = br.readLine();
+        if (headerLine == null) {
+            return 0;
+        }
+
+        List<String> headers =
+                CsvParser.parseLine(headerLine);
+
+        List<RetailStoreDto> chunk = new ArrayList<>(chunkSize);
+        long applied = 0;
+
+        String line;
+
+        while ((line = br.readLine()) != null) {
+
+            List<String> values =
+                    CsvParser.parseLine(line);
+
+            Map<String,String> row =
+                    new LinkedHashMap<>();
+
+            for (int i = 0; i < headers.size(); i++) {
+
+                row.put(
+                        headers.get(i),
+                        i < values.size()
+                                ? values.get(i)
+                                : "");
+            }
+
+            chunk.add(mapper.map(row));
+
+            if (chunk.size() >= chunkSize) {
+                applied += upserter.upsert(conn, chunk);
+                chunk.clear();
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            applied += upserter.upsert(conn, chunk);
+        }
+
+        return applied;
+    }
+
+    private Properties loadMapping() throws IOException {
+
+        Properties props = new Properties();
+
+        try (InputStream in =
+                getClass().getResourceAsStream(
+                        "/sf-mapping.properties")) {
+
+            props.load(in);
+        }
+
+        return props;
+    }
 }
 
 
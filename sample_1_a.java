@@ -1,5 +1,13 @@
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -8,43 +16,100 @@ import java.util.Objects;
  * - record単位を守る（レコード途中で分割しない）
  * - 各分割ファイルにヘッダーを書ける
  * - Java11 / 標準のみ
+ * - UTF-8 の場合は String を作らずに、エスケープしながら使い回しのバイト配列へ直接エンコードする
+ *   （バイト数もその場で分かるので、分割判定のために getBytes し直さない）
+ * - 書き込みは FileChannel へ 1MB 単位でまとめて流す
+ * - 閉じたパートごとのレコード数・バイト数を parts() で取れる
+ * - openStreaming で、ファイルではなく PartSink（アップロード用バッファなど）にパートを書ける
  *
  * 使い方：
  *   try (RotatingCsvWriter w = RotatingCsvWriter.open(outDir, "payload", 9_000_000, UTF_8, true, header)) {
  *       w.writeRecord(row1);
  *       w.writeRecord(row2);
  *   }
+ *
+ * 途中で失敗した時は close の前に abort を呼ぶ（書きかけのパートを完了扱いにしない）：
+ *   try (RotatingCsvWriter w = ...) {
+ *       try {
+ *           for (...) w.writeRecord(row);
+ *       } catch (Exception e) {
+ *           w.abort();
+ *           throw e;
+ *       }
+ *   }
  */
 public final class RotatingCsvWriter implements Closeable {
 
-    private final File outDir;
-    private final String baseName;
+    private final File outDir;       // openStreaming の時は null
+    private final String baseName;   // openStreaming の時は null
+    private final PartSink sink;     // open の時は null
     private final long maxBytesPerFile;
     private final Charset charset;
     private final boolean writeHeaderEachPart;
     private final List<String> header;
+    private final boolean[] plainColumns;
+    private final boolean utf8;
+
+    private static final int OUT_BUFFER_BYTES = 1 << 20;
 
     private int partNo = 0;
     private OutputStream out;
+    private boolean aborted;
     private long bytesWritten = 0;
+    private long recordsInPart = 0;
+    private final List<PartInfo> parts = new ArrayList<>();
 
     private final byte[] lfBytes;
 
+    // UTF-8 直接エンコード用（1レコード分。足りなければ拡張して使い回す）
+    private byte[] lineBuf = new byte[8192];
+    private int lineLen;
+    private final byte[] headerUtf8;
+
+    /** パートの書き込み先（ファイル以外に流す場合） */
+    public interface PartSink {
+        /** partNo（1始まり）の書き込み先を開く。閉じるのは RotatingCsvWriter 側 */
+        OutputStream openPart(int partNo) throws IOException;
+
+        /** partNo を書き終えて閉じた後に呼ばれる */
+        void partCompleted(int partNo, long records, long bytes) throws IOException;
+
+        /** abort で書きかけの partNo を捨てた時に呼ばれる（partCompleted は呼ばれない） */
+        default void partAborted(int partNo) throws IOException {}
+    }
+
     private RotatingCsvWriter(
             File outDir,
             String baseName,
+            PartSink sink,
             long maxBytesPerFile,
             Charset charset,
             boolean writeHeaderEachPart,
-            List<String> header
+            List<String> header,
+            boolean[] plainColumns
     ) {
-        this.outDir = Objects.requireNonNull(outDir, "outDir");
-        this.baseName = Objects.requireNonNull(baseName, "baseName");
+        if (sink == null) {
+            Objects.requireNonNull(outDir, "outDir");
+            Objects.requireNonNull(baseName, "baseName");
+        }
+        this.outDir = outDir;
+        this.baseName = baseName;
+        this.sink = sink;
         this.maxBytesPerFile = maxBytesPerFile;
         this.charset = Objects.requireNonNull(charset, "charset");
         this.writeHeaderEachPart = writeHeaderEachPart;
         this.header = header; // headerはnull許容（ヘッダー無しCSVなら）
+        this.plainColumns = plainColumns == null ? new boolean[0] : plainColumns.clone();
+        this.utf8 = StandardCharsets.UTF_8.equals(this.charset);
         this.lfBytes = "\n".getBytes(this.charset);
+
+        // ヘッダーは plainColumns の対象外（必ずエスケープ判定する）
+        if (utf8 && header != null) {
+            encodeLine(header, false);
+            this.headerUtf8 = Arrays.copyOf(lineBuf, lineLen);
+        } else {
+            this.headerUtf8 = null;
+        }
     }
 
     public static RotatingCsvWriter open(
@@ -54,19 +119,61 @@ public final class RotatingCsvWriter implements Closeable {
             Charset charset,
             boolean writeHeaderEachPart,
             List<String> header
+    ) throws IOException {
+        return open(outDir, baseName, maxBytesPerFile, charset, writeHeaderEachPart, header, null);
+    }
+
+    /**
+     * plainColumns[i] が true の列は「クォートが要る文字を絶対に含まない」（数値・SF Id・日付など）とみなし、
+     * エスケープ判定を省いてそのまま書く（UTF-8 の時のみ有効）。
+     * ★ 本当に , " CR LF 前後空白 を含まない列だけにすること（含むとCSVが壊れる）
+     */
+    public static RotatingCsvWriter open(
+            File outDir,
+            String baseName,
+            long maxBytesPerFile,
+            Charset charset,
+            boolean writeHeaderEachPart,
+            List<String> header,
+            boolean[] plainColumns
     ) throws IOException {
         if (maxBytesPerFile <= 0) throw new IllegalArgumentException("maxBytesPerFile must be > 0");
         if (!outDir.exists() && !outDir.mkdirs()) {
             throw new IOException("Failed to create dir: " + outDir.getAbsolutePath());
         }
 
-        RotatingCsvWriter w = new RotatingCsvWriter(outDir, baseName, maxBytesPerFile, charset, writeHeaderEachPart, header);
+        RotatingCsvWriter w = new RotatingCsvWriter(outDir, baseName, null, maxBytesPerFile, charset, writeHeaderEachPart, header, plainColumns);
         w.rotate(); // 最初のファイルを開く（必要ならヘッダーも書く）
         return w;
     }
 
+    /**
+     * ファイルの代わりに sink へパートを書く版（分割・ヘッダーの扱いは open と同じ）。
+     * パートを閉じるたびに sink.partCompleted が呼ばれるので、次のパートを書いている間に前のパートを送れる。
+     */
+    public static RotatingCsvWriter openStreaming(
+            PartSink sink,
+            long maxBytesPerPart,
+            Charset charset,
+            boolean writeHeaderEachPart,
+            List<String> header
+    ) throws IOException {
+        Objects.requireNonNull(sink, "sink");
+        if (maxBytesPerPart <= 0) throw new IllegalArgumentException("maxBytesPerPart must be > 0");
+
+        RotatingCsvWriter w = new RotatingCsvWriter(null, null, sink, maxBytesPerPart, charset, writeHeaderEachPart, header, null);
+        w.rotate();
+        return w;
+    }
+
     /** 1レコードを書く（必要ならファイルを分割してから書く） */
     public void writeRecord(List<String> cols) throws IOException {
+        if (aborted) throw new IllegalStateException("abort 済みの RotatingCsvWriter です");
+        if (utf8) {
+            writeRecordUtf8(cols);
+            return;
+        }
+
         String line = toCsvLine(cols);
         byte[] lineBytes = line.getBytes(charset);
 
@@ -83,11 +190,33 @@ public final class RotatingCsvWriter implements Closeable {
         out.write(lineBytes);
         out.write(lfBytes);
         bytesWritten += lineBytes.length + lfBytes.length;
+        recordsInPart++;
+    }
+
+    /** UTF-8版：lineBuf にエンコードした長さ（改行込み）でそのまま分割判定する */
+    private void writeRecordUtf8(List<String> cols) throws IOException {
+        encodeLine(cols, true);
+
+        if (lineLen > maxBytesPerFile) {
+            throw new IllegalStateException("Single record exceeds maxBytesPerFile. bytes=" + lineLen);
+        }
+        if (bytesWritten + lineLen > maxBytesPerFile) {
+            rotate();
+        }
+
+        out.write(lineBuf, 0, lineLen);
+        bytesWritten += lineLen;
+        recordsInPart++;
+    }
+
+    /** 閉じ終わったパートの一覧（close 後は最後のパートも含む） */
+    public List<PartInfo> parts() {
+        return Collections.unmodifiableList(parts);
     }
 
     /** 今の出力ファイル（デバッグ用） */
     public File currentFile() {
-        if (partNo <= 0) return null;
+        if (partNo <= 0 || sink != null) return null;
         return new File(outDir, String.format("%s_%03d.csv", baseName, partNo));
     }
 
@@ -95,11 +224,28 @@ public final class RotatingCsvWriter implements Closeable {
         closeCurrent();
 
         partNo++;
-        File file = new File(outDir, String.format("%s_%03d.csv", baseName, partNo));
-        out = new BufferedOutputStream(new FileOutputStream(file));
+        if (sink != null) {
+            out = new BufferedOutputStream(sink.openPart(partNo), OUT_BUFFER_BYTES);
+        } else {
+            File file = new File(outDir, String.format("%s_%03d.csv", baseName, partNo));
+            FileChannel ch = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            out = new BufferedOutputStream(Channels.newOutputStream(ch), OUT_BUFFER_BYTES);
+        }
         bytesWritten = 0;
+        recordsInPart = 0;
 
         if (writeHeaderEachPart && header != null) {
+            if (headerUtf8 != null) {
+                // ★ writeRecordUtf8 の途中で呼ばれるので lineBuf は使わない
+                if (headerUtf8.length > maxBytesPerFile) {
+                    throw new IllegalStateException("Header exceeds maxBytesPerFile. bytes=" + headerUtf8.length);
+                }
+                out.write(headerUtf8);
+                bytesWritten += headerUtf8.length;
+                return;
+            }
+
             String headerLine = toCsvLine(header);
             byte[] hb = headerLine.getBytes(charset);
 
@@ -118,14 +264,154 @@ public final class RotatingCsvWriter implements Closeable {
             out.flush();
             out.close();
             out = null;
+            parts.add(new PartInfo(partNo, currentFile(), recordsInPart, bytesWritten));
+            if (sink != null) {
+                sink.partCompleted(partNo, recordsInPart, bytesWritten);
+            }
         }
     }
 
     @Override
     public void close() throws IOException {
+        if (aborted) return;
         closeCurrent();
     }
 
+    /**
+     * 書きかけのパートを捨てて終わる（書き込み側が途中で失敗した時用）。
+     * - open の時は書きかけのファイルを消す（parts() には入らない。閉じ終わったパートのファイルは残す）
+     * - openStreaming の時は sink.partCompleted ではなく sink.partAborted を呼ぶ
+     * abort 後の close は何もしない。
+     */
+    public void abort() throws IOException {
+        if (aborted) return;
+        aborted = true;
+        if (out == null) return;
+
+        File file = currentFile();
+        try {
+            out.close();
+        } catch (IOException ignore) {
+            // 捨てるパートなので閉じる時の失敗は無視する
+        }
+        out = null;
+        if (sink != null) {
+            sink.partAborted(partNo);
+        } else if (file != null) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /** 書き終えた1パートの情報 */
+    public static final class PartInfo {
+        public final int partNo;
+        public final File file;      // openStreaming の時は null
+        public final long records;   // ヘッダーを除くレコード数
+        public final long bytes;     // ヘッダー込みのバイト数
+
+        public PartInfo(int partNo, File file, long records, long bytes) {
+            this.partNo = partNo;
+            this.file = file;
+            this.records = records;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "PartInfo{partNo=" + partNo + ", file=" + (file == null ? "-" : file.getName()) + ", records=" + records + ", bytes=" + bytes + "}";
+        }
+    }
+
+    // ===== UTF-8 直接エンコード（escapeCsv と同じ結果になること） =====
+
+    /** cols を1行（末尾LF込み）として lineBuf に書く。結果の長さは lineLen */
+    private void encodeLine(List<String> cols, boolean usePlainColumns) {
+        lineLen = 0;
+        for (int i = 0; i < cols.size(); i++) {
+            if (i > 0) putByte(',');
+
+            String s = cols.get(i);
+            if (s == null || s.isEmpty()) continue;
+
+            if (usePlainColumns && i < plainColumns.length && plainColumns[i]) {
+                encodeUtf8(s, false);
+                continue;
+            }
+
+            // まずはクォート無しでエンコードしつつ特殊文字を探す（普通の値は1パスで終わる）
+            int start = lineLen;
+            boolean mustQuote = encodeUtf8(s, false);
+            if (!mustQuote) {
+                char first = s.charAt(0);
+                char last = s.charAt(s.length() - 1);
+                mustQuote = first == ' ' || first == '\t' || last == ' ' || last == '\t';
+            }
+            if (mustQuote) {
+                lineLen = start;
+                putByte('"');
+                encodeUtf8(s, true);
+                putByte('"');
+            }
+        }
+        putByte('\n');
+    }
+
+    /**
+     * s を UTF-8 で lineBuf に追記する。quoteDoubling なら " を "" にする。
+     * ★ 不正なサロゲートは String.getBytes と同じく '?' にする
+     *
+     * @return , " CR LF のいずれかを含んでいたら true
+     */
+    private boolean encodeUtf8(String s, boolean quoteDoubling) {
+        int n = s.length();
+        ensure(n * 3 + (quoteDoubling ? n : 0));
+
+        byte[] b = lineBuf;
+        int p = lineLen;
+        boolean special = false;
+
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == ',' || c == '\n' || c == '\r') {
+                    special = true;
+                } else if (c == '"') {
+                    special = true;
+                    if (quoteDoubling) b[p++] = '"';
+                }
+                b[p++] = (byte) c;
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[p++] = (byte) (0xF0 | (cp >> 18));
+                b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                b[p++] = '?';
+            } else {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        lineLen = p;
+        return special;
+    }
+
+    private void putByte(char c) {
+        ensure(1);
+        lineBuf[lineLen++] = (byte) c;
+    }
+
+    private void ensure(int n) {
+        if (lineLen + n > lineBuf.length) {
+            lineBuf = Arrays.copyOf(lineBuf, Math.max(lineBuf.length * 2, lineLen + n));
+        }
+    }
+
     // ===== ここは「昔のCSV書き込み」と同じロジックに寄せてある =====
 
     private static String toCsvLine(List<String> cols) {
@@ -3,10 +3,13 @@ import org.apache.ibatis.cursor.Cursor;
 import java.io.*;
 import java.lang.reflect.*;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.nio.charset.StandardCharsets;
-import java.time.*;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public final class SfBulkCsvExporter {
@@ -19,6 +22,136 @@ public final class SfBulkCsvExporter {
             boolean mappingIsDtoToSf
     ) throws IOException {
 
+        List<Column<T>> columns = buildColumns(dtoClass, mappingStream, mappingIsDtoToSf);
+
+        try (PrintWriter w = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            w.println(headerLine(columns));
+
+            for (T dto : cursor) {
+                w.println(formatRow(dto, columns));
+            }
+            w.flush();
+        }
+    }
+
+    /**
+     * 並列版。カーソルを読むスレッドが batchSize 件ずつワーカーに渡し、
+     * ワーカーが整形＋UTF-8化した byte[] を、カーソル順のまま out に書く。
+     * - 出力は直列版とバイト単位で同一（改行も println と同じ line.separator）
+     * - 同時に抱えるバッチは threads * 2 まで（メモリ上限）
+     * - threads <= 1 なら直列版と同じ
+     */
+    public static <T> void export(
+            Class<T> dtoClass,
+            Cursor<T> cursor,
+            OutputStream out,
+            InputStream mappingStream,
+            boolean mappingIsDtoToSf,
+            int threads,
+            int batchSize
+    ) throws IOException {
+
+        if (threads <= 1) {
+            export(dtoClass, cursor, out, mappingStream, mappingIsDtoToSf);
+            return;
+        }
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+
+        List<Column<T>> columns = buildColumns(dtoClass, mappingStream, mappingIsDtoToSf);
+        int maxInFlight = threads * 2;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>(maxInFlight);
+
+        try (OutputStream o = out) {
+            o.write((headerLine(columns) + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8));
+
+            List<T> batch = new ArrayList<>(batchSize);
+            for (T dto : cursor) {
+                batch.add(dto);
+                if (batch.size() >= batchSize) {
+                    submitBatch(pool, inFlight, batch, columns);
+                    batch = new ArrayList<>(batchSize);
+
+                    // 先頭（一番古いバッチ）から順に書く＝カーソル順
+                    while (inFlight.size() >= maxInFlight) {
+                        o.write(await(inFlight.poll()));
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                submitBatch(pool, inFlight, batch, columns);
+            }
+
+            while (!inFlight.isEmpty()) {
+                o.write(await(inFlight.poll()));
+            }
+            o.flush();
+
+        } finally {
+            for (Future<byte[]> f : inFlight) {
+                f.cancel(true);
+            }
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> void submitBatch(
+            ExecutorService pool,
+            ArrayDeque<Future<byte[]>> inFlight,
+            List<T> batch,
+            List<Column<T>> columns) {
+
+        inFlight.add(pool.submit(() -> {
+            StringBuilder sb = new StringBuilder(batch.size() * columns.size() * 16);
+            for (T dto : batch) {
+                sb.append(formatRow(dto, columns)).append(LINE_SEPARATOR);
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }));
+    }
+
+    private static byte[] await(Future<byte[]> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV出力中に割り込みが発生しました", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException("CSV行の整形に失敗しました", cause);
+        }
+    }
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static <T> String headerLine(List<Column<T>> columns) {
+        return columns.stream().map(c -> c.sfName).collect(Collectors.joining(","));
+    }
+
+    private static <T> String formatRow(T dto, List<Column<T>> columns) {
+        List<String> row = new ArrayList<>(columns.size());
+        for (Column<T> col : columns) {
+            Object raw;
+            try {
+                raw = col.field.get(dto);
+            } catch (IllegalAccessException ex) {
+                throw new RuntimeException(ex);
+            }
+            String formatted = raw == null ? "" : col.formatter.format(raw);
+            row.add(escapeCsv(formatted));
+        }
+        return String.join(",", row);
+    }
+
+    private static <T> List<Column<T>> buildColumns(
+            Class<T> dtoClass,
+            InputStream mappingStream,
+            boolean mappingIsDtoToSf
+    ) throws IOException {
+
         Properties p = new Properties();
         try (Reader r = new InputStreamReader(mappingStream, StandardCharsets.UTF_8)) {
             p.load(r);
@@ -55,93 +188,124 @@ public final class SfBulkCsvExporter {
                         + sfName + " -> " + ms.dtoFieldName);
                 continue;
             }
-            columns.add(new Column<>(sfName, f, ms.format));
+            columns.add(new Column<>(sfName, f, compileFormatter(f.getType(), ms.format)));
         }
 
         if (columns.isEmpty()) throw new IllegalStateException("出力可能な列が1つもありません");
 
-        try (PrintWriter w = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
-            w.println(columns.stream().map(c -> c.sfName).collect(Collectors.joining(",")));
-
-            for (T dto : cursor) {
-                List<String> row = new ArrayList<>(columns.size());
-                for (Column<T> col : columns) {
-                    Object raw;
-                    try {
-                        raw = col.field.get(dto);
-                    } catch (IllegalAccessException ex) {
-                        throw new RuntimeException(ex);
-                    }
-                    String formatted = formatForSalesforce(raw, col.format);
-                    row.add(escapeCsv(formatted));
-                }
-                w.println(String.join(",", row));
-            }
-            w.flush();
-        }
+        return columns;
     }
 
     // --- 変換ルール ---
-    private static final DateTimeFormatter DATE = DateTimeFormatter.ISO_LOCAL_DATE; // yyyy-MM-dd
-    private static final DateTimeFormatter DATETIME_UTC = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX")
-            .withZone(ZoneOffset.UTC);
+    // date: ISO_LOCAL_DATE / datetime_utc: "yyyy-MM-dd'T'HH:mm:ss.SSSX"(UTC) と同じ出力を数字の直書きで作る
+    private static final SfDateTimeWriter DATE_TIMES = new SfDateTimeWriter();
+
+    /** 1列分の整形（v は null 以外。null は呼び出し側で空文字にする） */
+    @FunctionalInterface
+    private interface ColumnFormatter {
+        String format(Object v);
+    }
+
+    private static final ColumnFormatter RAW = String::valueOf;
 
-    private static String formatForSalesforce(Object v, String format) {
-        if (v == null) return "";
+    /**
+     * format とフィールドの宣言型から、その列専用の整形を1回だけ決める（行ごとの switch / instanceof なし）。
+     * - 宣言型で値の型が決まる列（BigDecimal / long / Boolean など）はその型専用の整形
+     * - Object などで決まらない列は、値の型を見て従来どおりに整形する
+     * - 対象外の型（String など）は従来どおり String.valueOf で素通し
+     *
+     * @throws IllegalArgumentException 未知の format
+     */
+    private static ColumnFormatter compileFormatter(Class<?> type, String format) {
+        Class<?> t = box(type);
 
         // 指定なし：基本は toString
         if (format == null || format.isBlank() || format.equals("raw")) {
-            return String.valueOf(v);
+            return RAW;
         }
 
         switch (format) {
-            case "date": { // yyyy-MM-dd
-                if (v instanceof LocalDate ld) return DATE.format(ld);
-                if (v instanceof java.sql.Date sd) return sd.toLocalDate().format(DATE);
-                if (v instanceof java.util.Date ud) {
-                    Instant i = ud.toInstant();
-                    return LocalDateTime.ofInstant(i, ZoneOffset.UTC).toLocalDate().format(DATE);
-                }
+            case "date": // yyyy-MM-dd（LocalDate / java.sql.Date / java.util.Date(UTC)）
                 // 文字列が来た場合はそのまま（既に整形済み想定）
-                return String.valueOf(v);
-            }
-            case "datetime_utc": { // yyyy-MM-ddTHH:mm:ss.SSSZ
-                Instant instant = null;
-                if (v instanceof Instant i) instant = i;
-                else if (v instanceof OffsetDateTime odt) instant = odt.toInstant();
-                else if (v instanceof ZonedDateTime zdt) instant = zdt.toInstant();
-                else if (v instanceof LocalDateTime ldt) instant = ldt.toInstant(ZoneOffset.UTC);
-                else if (v instanceof java.util.Date ud) instant = ud.toInstant();
-
-                if (instant != null) return DATETIME_UTC.format(instant);
-                return String.valueOf(v);
-            }
-            case "bool": { // TRUE/FALSE
-                if (v instanceof Boolean b) return b ? "TRUE" : "FALSE";
-                return String.valueOf(v);
-            }
-            case "int": {
-                if (v instanceof Number n) return String.valueOf(n.longValue());
-                return String.valueOf(v);
-            }
-            case "decimal": {
-                if (v instanceof BigDecimal bd) return bd.toPlainString();
-                if (v instanceof Number n) return BigDecimal.valueOf(n.doubleValue()).toPlainString();
-                return String.valueOf(v);
-            }
-            case "decimal2": {
-                BigDecimal bd = null;
-                if (v instanceof BigDecimal b) bd = b;
-                else if (v instanceof Number n) bd = BigDecimal.valueOf(n.doubleValue());
-                if (bd != null) return bd.setScale(2, BigDecimal.ROUND_HALF_UP).toPlainString();
-                return String.valueOf(v);
-            }
+                if (t == String.class) return RAW;
+                return v -> {
+                    String s = DATE_TIMES.formatDate(v);
+                    return s != null ? s : String.valueOf(v);
+                };
+            case "datetime_utc": // yyyy-MM-ddTHH:mm:ss.SSSZ
+                if (t == String.class) return RAW;
+                return v -> {
+                    String s = DATE_TIMES.formatDateTimeUtc(v);
+                    return s != null ? s : String.valueOf(v);
+                };
+            case "bool": // TRUE/FALSE
+                if (t == Boolean.class) return v -> (Boolean) v ? "TRUE" : "FALSE";
+                if (!t.isAssignableFrom(Boolean.class)) return RAW;
+                return v -> v instanceof Boolean b ? (b ? "TRUE" : "FALSE") : String.valueOf(v);
+            case "int":
+                if (Number.class.isAssignableFrom(t)) return v -> Long.toString(((Number) v).longValue());
+                if (!t.isAssignableFrom(Number.class)) return RAW;
+                return v -> v instanceof Number n ? Long.toString(n.longValue()) : String.valueOf(v);
+            case "decimal":
+                if (t == BigDecimal.class) return v -> ((BigDecimal) v).toPlainString();
+                if (Number.class.isAssignableFrom(t)) return v -> decimalViaDouble((Number) v);
+                if (!t.isAssignableFrom(Number.class)) return RAW;
+                return v -> {
+                    if (v instanceof BigDecimal bd) return bd.toPlainString();
+                    if (v instanceof Number n) return decimalViaDouble(n);
+                    return String.valueOf(v);
+                };
+            case "decimal2":
+                if (t == BigDecimal.class) return v -> decimal2((BigDecimal) v);
+                if (isIntegral(t)) return v -> decimal2Integral(((Number) v).longValue());
+                if (Number.class.isAssignableFrom(t)) return v -> decimal2((Number) v);
+                if (!t.isAssignableFrom(Number.class)) return RAW;
+                return v -> v instanceof Number n ? decimal2(n) : String.valueOf(v);
             default:
-                // 将来拡張用：未知のformatは素通し
-                return String.valueOf(v);
+                throw new IllegalArgumentException("未知のformatです: " + format);
         }
     }
 
+    private static String decimalViaDouble(Number n) {
+        return BigDecimal.valueOf(n.doubleValue()).toPlainString();
+    }
+
+    private static String decimal2(Number n) {
+        if (n instanceof BigDecimal bd) return decimal2(bd);
+        if (isIntegral(n.getClass())) return decimal2Integral(n.longValue());
+        // double / float などは従来どおり Double.toString 相当の値から丸める
+        return decimal2(BigDecimal.valueOf(n.doubleValue()));
+    }
+
+    private static String decimal2(BigDecimal bd) {
+        return bd.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    /**
+     * 整数の decimal2 は "整数.00"。double を経由しないので 2^53 を超える long も桁落ちしない
+     * （2^53 以下は BigDecimal.valueOf(double) 経由の従来と同じ出力）。
+     */
+    private static String decimal2Integral(long v) {
+        return Long.toString(v) + ".00";
+    }
+
+    private static boolean isIntegral(Class<?> t) {
+        return t == Long.class || t == Integer.class || t == Short.class || t == Byte.class;
+    }
+
+    private static Class<?> box(Class<?> t) {
+        if (!t.isPrimitive()) return t;
+        if (t == int.class) return Integer.class;
+        if (t == long.class) return Long.class;
+        if (t == boolean.class) return Boolean.class;
+        if (t == double.class) return Double.class;
+        if (t == float.class) return Float.class;
+        if (t == short.class) return Short.class;
+        if (t == byte.class) return Byte.class;
+        if (t == char.class) return Character.class;
+        return t;
+    }
+
     private static String escapeCsv(String s) {
         if (s == null) return "";
         if (s.contains(",") || s.contains("\n") || s.contains("\r") || s.contains("\"")) {
@@ -153,12 +317,12 @@ public final class SfBulkCsvExporter {
     private static final class Column<T> {
         final String sfName;
         final Field field;
-        final String format;
+        final ColumnFormatter formatter;
 
-        Column(String sfName, Field field, String format) {
+        Column(String sfName, Field field, ColumnFormatter formatter) {
             this.sfName = sfName;
             this.field = field;
-            this.format = format;
+            this.formatter = formatter;
         }
     }
 
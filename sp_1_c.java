@@ -2,8 +2,10 @@ import org.springframework.context.ApplicationContext;
 
 import javax.sql.DataSource;
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.util.concurrent.CompletionException;
 
 /**
  * Spring XMLの DataSource(bean id="Datasource") を使って、
@@ -56,4 +58,83 @@ public final class SfIdApplyRunner {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * apply の並列版。DataSource から workers 本のコネクションを借りて、キーで振り分けて同時に更新する。
+     * 途中で1本でも失敗したら全部 rollback（ALL_OR_NOTHING）。
+     *
+     * @param workers 並列数（コネクションプールの上限以下にすること）
+     */
+    public static void applyParallel(ApplicationContext ctx, File successCsv, int workers) throws Exception {
+
+        DataSource ds = ctx.getBean("Datasource", DataSource.class);
+
+        String keyColInCsv = "ExternalId__c";
+        String updateSql = "UPDATE MY_TABLE SET SF_ID = ? WHERE EXT_ID = ?";
+
+        int batchSize = 1000;
+
+        ParallelSuccessCsvToDbUpdater.ParallelSummary summary = ParallelSuccessCsvToDbUpdater.updateSfIdsFromSuccessCsv(
+                ds,
+                successCsv,
+                StandardCharsets.UTF_8,
+                keyColInCsv,
+                updateSql,
+                workers,
+                batchSize,
+                10, // ALL_OR_NOTHING では使われない（最後に1回commit）
+                ParallelSuccessCsvToDbUpdater.FailurePolicy.ALL_OR_NOTHING
+        );
+
+        System.out.println(summary);
+    }
+
+    /**
+     * apply のファイル無し版。Bulk ジョブの successfulResults をダウンロードしながら、そのままDBへ反映する。
+     * 1万件（1000件 × 10バッチ）ごとに commit し、commit 済みのレコード数をログに出す。
+     * 接続が切れたら commit 済みの位置から自動で続ける（最大3回）。プロセスごと落ちた時は、
+     * 最後にログに出た recordsCommitted を startRecord に渡して呼び直せば続きから再開できる。
+     *
+     * ※ apply と違い途中で commit する（全件1トランザクションではない）。
+     *
+     * @param api         ジョブを作った接続先の BulkApiAsyncClient
+     * @param jobId       JobComplete になった ingest ジョブ
+     * @param startRecord 先頭から読み飛ばすレコード数（初回は 0）
+     */
+    public static BulkSuccessCsvToDbUpdater.StreamSummary applyFromJob(
+            ApplicationContext ctx, BulkApiAsyncClient api, String jobId, long startRecord) throws Exception {
+
+        DataSource ds = ctx.getBean("Datasource", DataSource.class);
+
+        String keyColInCsv = "ExternalId__c";
+        String updateSql = "UPDATE MY_TABLE SET SF_ID = ? WHERE EXT_ID = ?";
+
+        int batchSize = 1000;
+
+        try (Connection conn = ds.getConnection()) {
+            BulkSuccessCsvToDbUpdater.StreamSummary summary = BulkSuccessCsvToDbUpdater.updateSfIdsFromSuccessStream(
+                    conn,
+                    () -> {
+                        try {
+                            return api.openResults(jobId, "successfulResults").join();
+                        } catch (CompletionException e) {
+                            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                            throw new IOException("成功結果CSVを開けませんでした jobId=" + jobId, e.getCause());
+                        }
+                    },
+                    StandardCharsets.UTF_8,
+                    keyColInCsv,
+                    updateSql,
+                    batchSize,
+                    10,
+                    startRecord,
+                    3,
+                    (recordsCommitted, soFar) ->
+                            System.out.println("committed jobId=" + jobId + " recordsCommitted=" + recordsCommitted + " " + soFar)
+            );
+
+            System.out.println(summary);
+            return summary;
+        }
+    }
+}
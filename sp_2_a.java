@@ -22,4 +22,15 @@ List<File> parts = listParts(outDir, "payload");
 
 for (File f : parts) {
     Bulk.createUpsert("RetailStore", f.getPath(), "LinkKey__c");
-}
\ No newline at end of file
+}
+
+----------------------------
+// 並行版（最大4ジョブ同時。パートごとの結果は payload_report.csv に）
+List<File> parts = listParts(outDir, "payload");
+
+BulkApiAsyncClient api = new BulkApiAsyncClient(instanceUrl, "v60.0", accessToken);
+BulkPartOrchestrator orch = new BulkPartOrchestrator(
+        api, 4, Duration.ofSeconds(5), Duration.ofHours(2), new File(outDir, "results"), 8);
+
+List<BulkPartOrchestrator.PartReport> reports = orch.run(parts, "RetailStore", "upsert", "LinkKey__c");
+BulkPartOrchestrator.writeReportCsv(new File(outDir, "payload_report.csv"), reports);